@@ -0,0 +1,90 @@
+package it.aw.documentingest.embedding;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput dell'embedding (segmenti al secondo) al variare dei thread dell'executor su cui
+ * embedAll distribuisce i testi ({@code embedding.executor.threads}), su {@value #SEGMENTS} chunk
+ * sintetici da circa 500 caratteri — la dimensione di un batch di ingestione tipico.
+ * <p>
+ * La sessione ONNX è una sola per processo in ogni configurazione: varia solo il numero di
+ * inferenze concorrenti su di essa. {@code threads=0} misura l'executor predefinito del modello
+ * (un thread per core), cioè il comportamento di default dell'applicazione.
+ * <p>
+ * Esecuzione: {@code mvn -Pbenchmark compile exec:exec -Djmh.args="EmbeddingExecutorBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class EmbeddingExecutorBenchmark {
+
+    static final int SEGMENTS = 256;
+    private static final long SEED = 42L;
+
+    private static final String[] WORDS = {
+            "il", "contratto", "le", "parti", "del", "presente", "accordo", "obbligazioni", "ai", "sensi",
+            "della", "normativa", "vigente", "in", "materia", "di", "responsabilità", "fornitore", "committente",
+            "termine", "entro", "giorni", "dalla", "data", "comunicazione", "scritta", "eventuale", "penale",
+            "risoluzione", "inadempimento", "corrispettivo", "pagamento", "fattura", "prestazione", "servizio"
+    };
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int threads;
+
+    private ExecutorService executor;
+    private EmbeddingModel model;
+    private List<TextSegment> segments;
+
+    @Setup
+    public void setup() {
+        if (threads > 0) {
+            executor = Executors.newFixedThreadPool(threads);
+            model = new AllMiniLmL6V2QuantizedEmbeddingModel(executor);
+        } else {
+            model = new AllMiniLmL6V2QuantizedEmbeddingModel();
+        }
+        SplittableRandom random = new SplittableRandom(SEED);
+        segments = new ArrayList<>(SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            StringBuilder sb = new StringBuilder(520);
+            while (sb.length() < 500) sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            segments.add(TextSegment.from(sb.toString().trim()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEGMENTS)
+    public int embedAll() {
+        return model.embedAll(segments).content().size();
+    }
+}
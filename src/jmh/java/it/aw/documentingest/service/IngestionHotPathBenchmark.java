@@ -0,0 +1,119 @@
+package it.aw.documentingest.service;
+
+import dev.langchain4j.data.document.Metadata;
+import it.aw.documentingest.model.ChunkInfo;
+import it.aw.documentingest.service.OffsetDocumentSplitter.Span;
+import it.aw.documentingest.service.PdfPageParser.PagedText;
+import it.aw.documentingest.service.SectionDetector.SectionBoundary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark dei percorsi caldi dell'ingestione, su un documento sintetico di
+ * {@code chapters × 25} articoli con 4 commi ciascuno e pagine da 3000 caratteri.
+ * <p>
+ * Le interrogazioni puntuali ({@code hierarchyAt}, {@code pageRangeFor}, {@code sectionAt})
+ * sono misurate su {@value #PROBES} offset casuali ma fissati dal seed; il punteggio è per
+ * singola interrogazione. {@code enrichSegments} riscrive ogni volta gli stessi metadati sui
+ * segmenti preparati in setup, come avviene per un documento reale.
+ * <p>
+ * Esecuzione: {@code mvn -Pbenchmark compile exec:exec} (throughput e profiler gc).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class IngestionHotPathBenchmark {
+
+    static final int PROBES = 1024;
+    private static final long SEED = 42L;
+
+    /** Capitoli del documento: 20 ≈ 2.500 heading, 80 ≈ 10.000 heading. */
+    @Param({"20", "80"})
+    public int chapters;
+
+    private String text;
+    private PagedText pagedText;
+    private List<SectionBoundary> boundaries;
+    private List<Span> spans;
+    private SectionPageIndex index;
+    private int[] probeStarts;
+    private int[] probeEnds;
+
+    @Setup
+    public void setup() {
+        pagedText = SyntheticLegalText.generate(SEED, chapters, 25, 4, 3000);
+        text = pagedText.fullText();
+        boundaries = SectionDetector.detect(text);
+        Metadata base = new Metadata();
+        base.put("filename", "benchmark.pdf");
+        base.put("documentId", "benchmark");
+        base.put("projectId", "benchmark");
+        spans = new OffsetDocumentSplitter(500, 50).split(text, base);
+        index = SectionPageIndex.build(boundaries, pagedText);
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        probeStarts = new int[PROBES];
+        probeEnds = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probeStarts[i] = random.nextInt(text.length());
+            probeEnds[i] = Math.min(probeStarts[i] + 500, text.length());
+        }
+    }
+
+    @Benchmark
+    public List<SectionBoundary> detect() {
+        return SectionDetector.detect(text);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void hierarchyAt(Blackhole bh) {
+        for (int offset : probeStarts) bh.consume(SectionDetector.hierarchyAt(offset, boundaries));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void pagedTextPageRangeFor(Blackhole bh) {
+        for (int i = 0; i < PROBES; i++) bh.consume(pagedText.pageRangeFor(probeStarts[i], probeEnds[i]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void indexSectionAt(Blackhole bh) {
+        for (int offset : probeStarts) bh.consume(index.sectionAt(offset));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public void indexPageRangeFor(Blackhole bh) {
+        for (int i = 0; i < PROBES; i++) bh.consume(index.pageRangeFor(probeStarts[i], probeEnds[i]));
+    }
+
+    @Benchmark
+    public SectionPageIndex buildIndex() {
+        return SectionPageIndex.build(boundaries, pagedText);
+    }
+
+    @Benchmark
+    public List<ChunkInfo> enrichSegments() {
+        return IngestionService.enrichSegments(spans, boundaries, pagedText);
+    }
+}
@@ -0,0 +1,78 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.service.PdfPageParser.PagedText;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generatore deterministico di testi in stile normativo italiano per i benchmark:
+ * capitoli, articoli e commi con paragrafi di prosa, suddivisi in pagine di lunghezza fissa.
+ * A parità di seed e dimensioni il testo prodotto è identico, quindi i risultati sono
+ * confrontabili tra esecuzioni e macchine diverse.
+ */
+final class SyntheticLegalText {
+
+    private static final String[] WORDS = {
+            "il", "contratto", "le", "parti", "del", "presente", "accordo", "obbligazioni", "ai", "sensi",
+            "della", "normativa", "vigente", "in", "materia", "di", "responsabilità", "fornitore", "committente",
+            "termine", "entro", "giorni", "dalla", "data", "comunicazione", "scritta", "eventuale", "penale",
+            "risoluzione", "inadempimento", "corrispettivo", "pagamento", "fattura", "prestazione", "servizio",
+            "qualità", "riservatezza", "dati", "personali", "trattamento", "garanzia", "foro", "competente",
+            "recesso", "preavviso", "modifica", "clausola", "validità", "efficacia", "disposizioni", "finali"
+    };
+
+    private static final String[] TITLES = {
+            "Oggetto del contratto", "Definizioni", "Obblighi del fornitore", "Corrispettivi",
+            "Durata e rinnovo", "Penali", "Riservatezza", "Trattamento dei dati", "Recesso",
+            "Risoluzione", "Foro competente", "Disposizioni finali"
+    };
+
+    private SyntheticLegalText() {}
+
+    /**
+     * @param chapters            capitoli (heading di livello 1)
+     * @param articlesPerChapter  articoli per capitolo (livello 2)
+     * @param commiPerArticle     commi per articolo (livello 3)
+     * @param pageChars           caratteri per pagina della mappa pagine
+     */
+    static PagedText generate(long seed, int chapters, int articlesPerChapter, int commiPerArticle, int pageChars) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder sb = new StringBuilder();
+        int article = 0;
+        for (int c = 1; c <= chapters; c++) {
+            sb.append("Capitolo ").append(c).append(" — ").append(title(random)).append('\n');
+            paragraph(sb, random, 20);
+            for (int a = 1; a <= articlesPerChapter; a++) {
+                sb.append("Art. ").append(++article).append(" — ").append(title(random)).append('\n');
+                paragraph(sb, random, 30);
+                for (int m = 1; m <= commiPerArticle; m++) {
+                    sb.append("Comma ").append(m).append('\n');
+                    paragraph(sb, random, 40 + random.nextInt(80));
+                }
+            }
+        }
+        String text = sb.toString();
+
+        List<int[]> pages = new ArrayList<>(text.length() / pageChars + 1);
+        for (int start = 0, page = 1; start < text.length(); start += pageChars, page++) {
+            pages.add(new int[]{page, start, Math.min(start + pageChars, text.length())});
+        }
+        return new PagedText(text, pages);
+    }
+
+    private static String title(SplittableRandom random) {
+        return TITLES[random.nextInt(TITLES.length)];
+    }
+
+    private static void paragraph(StringBuilder sb, SplittableRandom random, int words) {
+        for (int i = 0; i < words; i++) {
+            String w = WORDS[random.nextInt(WORDS.length)];
+            if (i == 0) sb.append(Character.toUpperCase(w.charAt(0))).append(w, 1, w.length());
+            else sb.append(' ').append(w);
+            if (i % 15 == 14 && i + 1 < words) sb.append('.');
+        }
+        sb.append(".\n\n");
+    }
+}
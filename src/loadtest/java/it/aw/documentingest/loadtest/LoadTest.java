@@ -0,0 +1,231 @@
+package it.aw.documentingest.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.aw.documentingest.DocumentIngestApplication;
+import it.aw.documentingest.loadtest.SyntheticCorpus.GeneratedFile;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Load test end-to-end, senza rete: avvia l'applicazione su una porta libera con un file DuckDB
+ * temporaneo, genera un corpus sintetico di PDF e file di testo e lo carica via HTTP con più
+ * client concorrenti. A ogni soglia di chunk indicizzati ({@code loadtest.milestones}) misura la
+ * latenza della ricerca con traffico concorrente e stampa una riga della tabella finale.
+ * <p>
+ * Parametri (system property):
+ * <ul>
+ *   <li>{@code loadtest.milestones} — soglie di chunk, default {@code 1000,10000,100000,1000000}</li>
+ *   <li>{@code loadtest.ingest.concurrency} — upload concorrenti, default 4</li>
+ *   <li>{@code loadtest.search.concurrency} — ricerche concorrenti, default 8</li>
+ *   <li>{@code loadtest.search.requests} — ricerche per soglia, default 500</li>
+ *   <li>{@code loadtest.articles} — articoli per documento (~3 chunk ciascuno), default 15</li>
+ *   <li>{@code loadtest.pdf-ratio} — frazione di documenti PDF, default 0.3</li>
+ *   <li>{@code loadtest.projects} — progetti tra cui distribuire i documenti, default 10</li>
+ *   <li>{@code loadtest.seed} — seed del corpus e delle query, default 42</li>
+ * </ul>
+ * La cache dei risultati di ricerca è disattivata, così ogni ricerca interroga lo store.
+ * Esecuzione: {@code mvn -Ploadtest compile exec:exec}.
+ */
+public final class LoadTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final String baseUrl;
+    private final SyntheticCorpus corpus;
+    private final int projects;
+
+    private final AtomicInteger nextDocument = new AtomicInteger();
+    private final AtomicLong totalChunks = new AtomicLong();
+    private final AtomicLong totalDocuments = new AtomicLong();
+
+    private LoadTest(String baseUrl, SyntheticCorpus corpus, int projects) {
+        this.baseUrl = baseUrl;
+        this.corpus = corpus;
+        this.projects = projects;
+    }
+
+    /** Riga della tabella dei risultati. */
+    private record Milestone(long chunks, long documents, double docsPerSec, double chunksPerSec,
+                             double p50Ms, double p95Ms, double p99Ms, double searchesPerSec) {}
+
+    public static void main(String[] args) throws Exception {
+        long[] milestones = Arrays.stream(System.getProperty("loadtest.milestones", "1000,10000,100000,1000000")
+                .split(",")).map(String::trim).mapToLong(Long::parseLong).sorted().toArray();
+        int ingestConcurrency = Integer.getInteger("loadtest.ingest.concurrency", 4);
+        int searchConcurrency = Integer.getInteger("loadtest.search.concurrency", 8);
+        int searchRequests = Integer.getInteger("loadtest.search.requests", 500);
+        int articles = Integer.getInteger("loadtest.articles", 15);
+        double pdfRatio = Double.parseDouble(System.getProperty("loadtest.pdf-ratio", "0.3"));
+        int projects = Integer.getInteger("loadtest.projects", 10);
+        long seed = Long.getLong("loadtest.seed", 42L);
+
+        Path dataDir = Files.createTempDirectory("document-ingest-loadtest-");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DocumentIngestApplication.class)
+                .properties(
+                        "server.port=0",
+                        "store.embedding.path=" + dataDir.resolve("embedding-store.duckdb"),
+                        "ingest.spool.dir=" + dataDir.resolve("spool"),
+                        "search.result-cache.max-entries=0",
+                        "search.slow-query.threshold=0s",
+                        "logging.level.it.aw.documentingest=WARN")
+                .run();
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadTest test = new LoadTest("http://localhost:" + port + "/api/documents",
+                    new SyntheticCorpus(seed, articles, pdfRatio), projects);
+            List<String> queries = test.corpus.queries(200);
+
+            System.out.printf(Locale.ROOT, "Load test su %s — ingest x%d, search x%d, dati in %s%n",
+                    test.baseUrl, ingestConcurrency, searchConcurrency, dataDir);
+            List<Milestone> results = new ArrayList<>();
+            for (long target : milestones) {
+                results.add(test.runMilestone(target, ingestConcurrency, searchConcurrency, searchRequests, queries));
+                print(results);
+            }
+        } finally {
+            context.close();
+            deleteRecursively(dataDir);
+        }
+    }
+
+    private Milestone runMilestone(long targetChunks, int ingestConcurrency, int searchConcurrency,
+                                   int searchRequests, List<String> queries) throws Exception {
+        long chunksBefore = totalChunks.get();
+        long docsBefore = totalDocuments.get();
+        long start = System.nanoTime();
+        runConcurrently(ingestConcurrency, () -> {
+            while (totalChunks.get() < targetChunks) ingestOne();
+            return null;
+        });
+        double ingestSeconds = (System.nanoTime() - start) / 1e9;
+
+        long[] latencies = new long[searchRequests];
+        AtomicInteger nextSearch = new AtomicInteger();
+        long searchStart = System.nanoTime();
+        runConcurrently(searchConcurrency, () -> {
+            for (int i; (i = nextSearch.getAndIncrement()) < searchRequests; ) {
+                latencies[i] = searchOne(queries.get(i % queries.size()), i);
+            }
+            return null;
+        });
+        double searchSeconds = (System.nanoTime() - searchStart) / 1e9;
+        Arrays.sort(latencies);
+
+        return new Milestone(totalChunks.get(), totalDocuments.get(),
+                (totalDocuments.get() - docsBefore) / ingestSeconds,
+                (totalChunks.get() - chunksBefore) / ingestSeconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99),
+                searchRequests / searchSeconds);
+    }
+
+    private void ingestOne() throws IOException, InterruptedException {
+        int n = nextDocument.getAndIncrement();
+        GeneratedFile file = corpus.document(n);
+        String boundary = "----loadtest" + UUID.randomUUID();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/ingest?projectId=" + project(n)))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, file)))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Ingest di " + file.filename() + " fallito: HTTP " + response.statusCode());
+        }
+        totalChunks.addAndGet(JSON.readTree(response.body()).path("chunkCount").asLong());
+        totalDocuments.incrementAndGet();
+    }
+
+    /** Una ricerca su quattro è globale, le altre sono limitate a un progetto. */
+    private long searchOne(String query, int i) throws IOException, InterruptedException {
+        String url = baseUrl + "/search?limit=5&q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)
+                + (i % 4 == 0 ? "" : "&projectId=" + project(i));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).GET().build();
+        long start = System.nanoTime();
+        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+        long elapsed = System.nanoTime() - start;
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Ricerca \"" + query + "\" fallita: HTTP " + response.statusCode());
+        }
+        return elapsed;
+    }
+
+    private String project(int n) {
+        return "loadtest-" + (n % projects);
+    }
+
+    private static byte[] multipart(String boundary, GeneratedFile file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(file.content().length + 512);
+        out.write(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + file.filename() + "\"\r\n"
+                + "Content-Type: " + file.contentType() + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(file.content());
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private interface Worker {
+        Void run() throws Exception;
+    }
+
+    /** Esegue {@code worker} su {@code threads} thread e attende la fine di tutti, propagando il primo errore. */
+    private static void runConcurrently(int threads, Worker worker) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) futures.add(pool.submit(worker::run));
+            for (Future<Void> f : futures) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static double percentile(long[] sortedNanos, double p) {
+        if (sortedNanos.length == 0) return 0;
+        int i = (int) Math.ceil(p * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(i, sortedNanos.length - 1))] / 1e6;
+    }
+
+    private static void print(List<Milestone> results) {
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%10s %8s %10s %10s %9s %9s %9s %9s%n",
+                "chunks", "docs", "docs/s", "chunks/s", "p50 ms", "p95 ms", "p99 ms", "search/s");
+        for (Milestone m : results) {
+            System.out.printf(Locale.ROOT, "%10d %8d %10.1f %10.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    m.chunks(), m.documents(), m.docsPerSec(), m.chunksPerSec(),
+                    m.p50Ms(), m.p95Ms(), m.p99Ms(), m.searchesPerSec());
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
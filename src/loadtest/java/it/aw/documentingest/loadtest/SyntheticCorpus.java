@@ -0,0 +1,147 @@
+package it.aw.documentingest.loadtest;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Corpus sintetico per il load test: documenti in stile normativo italiano (capitoli, articoli,
+ * commi) generati in memoria come file di testo o PDF. Ogni documento dipende solo dal seed e dal
+ * suo numero progressivo, quindi due esecuzioni con gli stessi parametri producono gli stessi file.
+ * <p>
+ * Il vocabolario è solo ASCII perché i PDF usano il font standard Helvetica (WinAnsi).
+ */
+final class SyntheticCorpus {
+
+    /** Documento generato, pronto per l'upload multipart. */
+    record GeneratedFile(String filename, String contentType, byte[] content) {}
+
+    private static final String[] WORDS = {
+            "il", "contratto", "le", "parti", "del", "presente", "accordo", "obbligazioni", "ai", "sensi",
+            "della", "normativa", "vigente", "in", "materia", "di", "fornitore", "committente", "termine",
+            "entro", "giorni", "dalla", "data", "comunicazione", "scritta", "eventuale", "penale",
+            "risoluzione", "inadempimento", "corrispettivo", "pagamento", "fattura", "prestazione",
+            "servizio", "riservatezza", "dati", "personali", "trattamento", "garanzia", "foro", "competente",
+            "recesso", "preavviso", "modifica", "clausola", "efficacia", "disposizioni", "finali", "collaudo",
+            "consegna", "fornitura", "manutenzione", "assistenza", "subappalto", "cauzione", "proroga"
+    };
+
+    private static final String[] TITLES = {
+            "Oggetto del contratto", "Definizioni", "Obblighi del fornitore", "Corrispettivi",
+            "Durata e rinnovo", "Penali", "Riservatezza", "Trattamento dei dati", "Recesso",
+            "Risoluzione", "Foro competente", "Disposizioni finali", "Collaudo", "Subappalto"
+    };
+
+    private static final int LINE_CHARS = 95;
+    private static final int LINES_PER_PAGE = 50;
+
+    private final long seed;
+    private final int articlesPerDocument;
+    private final double pdfRatio;
+
+    /**
+     * @param articlesPerDocument articoli per documento (ognuno con 3 commi): con chunkSize 500
+     *                            ogni articolo produce circa 3 chunk
+     * @param pdfRatio            frazione dei documenti generati come PDF
+     */
+    SyntheticCorpus(long seed, int articlesPerDocument, double pdfRatio) {
+        this.seed = seed;
+        this.articlesPerDocument = articlesPerDocument;
+        this.pdfRatio = pdfRatio;
+    }
+
+    GeneratedFile document(int n) {
+        SplittableRandom random = new SplittableRandom(seed * 1_000_003L + n);
+        List<String> lines = lines(random, n);
+        if (random.nextDouble() < pdfRatio) {
+            return new GeneratedFile("doc-" + n + ".pdf", "application/pdf", pdf(lines));
+        }
+        return new GeneratedFile("doc-" + n + ".txt", "text/plain",
+                String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Query di ricerca plausibili per il corpus, deterministiche dato il seed. */
+    List<String> queries(int count) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            queries.add(TITLES[random.nextInt(TITLES.length)].toLowerCase() + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+        }
+        return queries;
+    }
+
+    private List<String> lines(SplittableRandom random, int n) {
+        List<String> lines = new ArrayList<>();
+        int chapters = Math.max(1, articlesPerDocument / 10);
+        int article = 0;
+        for (int c = 1; c <= chapters; c++) {
+            lines.add("Capitolo " + c + " - " + title(random));
+            paragraph(lines, random, 25);
+            int articles = c < chapters ? articlesPerDocument / chapters
+                                        : articlesPerDocument - article;
+            for (int a = 0; a < articles; a++) {
+                lines.add("Art. " + (++article) + " - " + title(random) + " (documento " + n + ")");
+                paragraph(lines, random, 30);
+                for (int m = 1; m <= 3; m++) {
+                    lines.add("Comma " + m);
+                    paragraph(lines, random, 40 + random.nextInt(60));
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static String title(SplittableRandom random) {
+        return TITLES[random.nextInt(TITLES.length)];
+    }
+
+    private static void paragraph(List<String> lines, SplittableRandom random, int words) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            String w = WORDS[random.nextInt(WORDS.length)];
+            if (line.length() + w.length() + 2 > LINE_CHARS) {
+                lines.add(line.toString());
+                line.setLength(0);
+            }
+            if (line.length() > 0) line.append(' ');
+            line.append(i == 0 ? Character.toUpperCase(w.charAt(0)) + w.substring(1) : w);
+            if (i % 15 == 14) line.append('.');
+        }
+        lines.add(line.append('.').toString());
+        lines.add("");
+    }
+
+    private static byte[] pdf(List<String> lines) {
+        try (PDDocument doc = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (int from = 0; from < lines.size(); from += LINES_PER_PAGE) {
+                PDPage page = new PDPage();
+                doc.addPage(page);
+                try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+                    cs.beginText();
+                    cs.setFont(PDType1Font.HELVETICA, 9);
+                    cs.setLeading(13);
+                    cs.newLineAtOffset(40, 750);
+                    for (String line : lines.subList(from, Math.min(from + LINES_PER_PAGE, lines.size()))) {
+                        cs.showText(line);
+                        cs.newLine();
+                    }
+                    cs.endText();
+                }
+            }
+            doc.save(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
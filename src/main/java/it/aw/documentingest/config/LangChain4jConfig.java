@@ -5,21 +5,32 @@ import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.onnx.allminilml6v2q.AllMiniLmL6V2QuantizedEmbeddingModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import it.aw.documentingest.embedding.BatchingEmbeddingModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Configura i bean LangChain4j.
  *
  * EmbeddingModel: AllMiniLM-L6-v2 quantizzato — gira in locale, senza API key.
+ *                 La sessione ONNX del modello è unica per processo (campo statico della classe
+ *                 langchain4j); embedAll distribuisce i testi su un executor dedicato di
+ *                 embedding.executor.threads thread (0 = numero di core dell'host).
+ *                 Se embedding.batch.enabled=true è avvolto da BatchingEmbeddingModel, che
+ *                 raggruppa le richieste concorrenti (query con priorità sulle ingestioni).
  * EmbeddingStore: DuckDBEmbeddingStore — database embedded, nessun server esterno.
  *                 Persiste su file .duckdb; crash-safe, con indici vettoriali nativi.
  *                 Per produzione sostituire con PgVectorEmbeddingStore.
@@ -32,10 +43,46 @@ public class LangChain4jConfig {
     @Value("${store.embedding.path}")
     private String embeddingFilePath;
 
+    /** Thread dell'executor di embedAll (0 = numero di core). */
+    @Value("${embedding.executor.threads:0}")
+    private int executorThreads;
+
+    private ExecutorService embeddingExecutor;
+
+    @Value("${embedding.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    @Value("${embedding.batch.max-size:64}")
+    private int batchMaxSize;
+
+    @Value("${embedding.batch.max-wait-ms:5}")
+    private long batchMaxWaitMs;
+
+    @Value("${embedding.batch.dispatchers:2}")
+    private int batchDispatchers;
+
     @Bean
     public EmbeddingModel embeddingModel() {
-        log.info("Inizializzazione EmbeddingModel: AllMiniLmL6V2Quantized (locale)");
-        return new AllMiniLmL6V2QuantizedEmbeddingModel();
+        int threads = executorThreads > 0 ? executorThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCounter = new AtomicInteger();
+        embeddingExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "embedding-worker-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("Inizializzazione EmbeddingModel: AllMiniLmL6V2Quantized (locale), executor di {} thread", threads);
+        EmbeddingModel model = new AllMiniLmL6V2QuantizedEmbeddingModel(embeddingExecutor);
+        if (!batchEnabled) {
+            return model;
+        }
+        log.info("Micro-batching embedding: max {} testi, attesa max {} ms, {} dispatcher",
+                batchMaxSize, batchMaxWaitMs, batchDispatchers);
+        return new BatchingEmbeddingModel(model, batchMaxSize, Duration.ofMillis(batchMaxWaitMs), batchDispatchers);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (embeddingExecutor != null) embeddingExecutor.shutdownNow();
     }
 
     @Bean
@@ -0,0 +1,92 @@
+package it.aw.documentingest.config;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import it.aw.documentingest.embedding.BatchingEmbeddingModel;
+import it.aw.documentingest.registry.DocumentRegistry;
+import it.aw.documentingest.service.IngestionAdmission;
+import it.aw.documentingest.service.QueryEmbeddingCache;
+import it.aw.documentingest.service.SearchResultCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Metriche dei componenti condivisi, lette su richiesta dal MeterRegistry (nessun costo sul percorso caldo):
+ * <ul>
+ *   <li>{@code embedding.batch.size} — distribuzione delle dimensioni dei batch inviati al modello</li>
+ *   <li>{@code embedding.batch.last.size}, {@code embedding.batch.pending} — ultimo batch e testi in coda</li>
+ *   <li>{@code registry.pool.*} — connessioni di lettura libere e attese sul pool DuckDB</li>
+ *   <li>{@code cache.hits}, {@code cache.misses} — cache in memoria di query e risultati</li>
+ *   <li>{@code ingest.admission.*} — memoria riservata, ingestioni in corso, in coda e respinte</li>
+ * </ul>
+ * Le metriche di ingestione per fase sono in {@link it.aw.documentingest.service.IngestionMetrics}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder embeddingBatchMetrics(EmbeddingModel embeddingModel) {
+        return registry -> {
+            if (!(embeddingModel instanceof BatchingEmbeddingModel batching)) return;
+            DistributionSummary batchSize = DistributionSummary.builder("embedding.batch.size")
+                    .description("Testi per batch inviato al modello di embedding")
+                    .publishPercentileHistogram()
+                    .register(registry);
+            batching.setBatchListener(batchSize::record);
+            Gauge.builder("embedding.batch.last.size", batching, BatchingEmbeddingModel::lastBatchSize)
+                    .register(registry);
+            for (BatchingEmbeddingModel.Priority priority : BatchingEmbeddingModel.Priority.values()) {
+                Gauge.builder("embedding.batch.pending", batching, b -> b.pending(priority))
+                        .tag("priority", priority.name().toLowerCase())
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder registryPoolMetrics(DocumentRegistry documentRegistry) {
+        return registry -> {
+            Gauge.builder("registry.pool.idle.readers", documentRegistry, r -> r.poolStats().idleReaders())
+                    .register(registry);
+            Gauge.builder("registry.pool.waiting.writers", documentRegistry, r -> r.poolStats().waitingWriters())
+                    .register(registry);
+            FunctionCounter.builder("registry.pool.wait.ms", documentRegistry, r -> r.poolStats().readWaitTotalMs())
+                    .tag("mode", "read")
+                    .register(registry);
+            FunctionCounter.builder("registry.pool.wait.ms", documentRegistry, r -> r.poolStats().writeWaitTotalMs())
+                    .tag("mode", "write")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder cacheMetrics(QueryEmbeddingCache queryCache, SearchResultCache resultCache) {
+        return registry -> {
+            FunctionCounter.builder("cache.hits", queryCache, c -> c.stats().hits())
+                    .tag("cache", "query-embedding").register(registry);
+            FunctionCounter.builder("cache.misses", queryCache, c -> c.stats().misses())
+                    .tag("cache", "query-embedding").register(registry);
+            FunctionCounter.builder("cache.hits", resultCache, c -> c.stats().hits())
+                    .tag("cache", "search-result").register(registry);
+            FunctionCounter.builder("cache.misses", resultCache, c -> c.stats().misses())
+                    .tag("cache", "search-result").register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder admissionMetrics(IngestionAdmission admission) {
+        return registry -> {
+            Gauge.builder("ingest.admission.reserved.bytes", admission, a -> a.stats().reservedBytes())
+                    .register(registry);
+            Gauge.builder("ingest.admission.budget.bytes", admission, a -> a.stats().budgetBytes())
+                    .register(registry);
+            Gauge.builder("ingest.admission.queued", admission, a -> a.stats().queued())
+                    .register(registry);
+            FunctionCounter.builder("ingest.admission.rejected", admission, a -> a.stats().rejected())
+                    .register(registry);
+        };
+    }
+}
@@ -1,32 +1,58 @@
 package it.aw.documentingest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.aw.documentingest.model.BulkIngestResult;
 import it.aw.documentingest.model.ChunkingParams;
+import it.aw.documentingest.model.DocumentPage;
 import it.aw.documentingest.model.DocumentRecord;
 import it.aw.documentingest.model.DocumentSummary;
+import it.aw.documentingest.model.IngestionJobStatus;
+import it.aw.documentingest.model.ProjectStats;
+import it.aw.documentingest.model.SchedulerStats;
+import it.aw.documentingest.model.SearchQuery;
 import it.aw.documentingest.model.SearchResult;
+import it.aw.documentingest.model.SearchStats;
 import it.aw.documentingest.model.StoreStats;
 import it.aw.documentingest.registry.DocumentRegistry;
+import it.aw.documentingest.registry.EmbeddingCache;
+import it.aw.documentingest.service.AdmissionRejectedException;
+import it.aw.documentingest.service.BulkIngestionService;
+import it.aw.documentingest.service.FairScheduler;
+import it.aw.documentingest.service.IngestionJobService;
 import it.aw.documentingest.service.IngestionService;
+import it.aw.documentingest.service.SchedulerInterruptedException;
 import it.aw.documentingest.service.SearchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Espone le operazioni CRUD, di ricerca e di info sui documenti indicizzati.
  *
  * Endpoint disponibili:
- *   POST   /api/documents/ingest            — indicizza un nuovo documento
- *   GET    /api/documents/search?q=&limit=  — ricerca semantica
- *   GET    /api/documents                   — lista tutti i documenti indicizzati
- *   GET    /api/documents/stats             — statistiche aggregate dello store
- *   GET    /api/documents/{documentId}      — dettaglio e chunk preview di un documento
+ *   POST   /api/documents/ingest            — indicizza un nuovo documento (async=true → job in coda)
+ *   POST   /api/documents/ingest/bulk       — indicizza più file o un archivio ZIP in una richiesta
+ *   GET    /api/documents/search?q=&limit=  — ricerca semantica (explain=true per la diagnostica)
+ *   POST   /api/documents/search/batch      — più ricerche in una richiesta, risultati nello stesso ordine
+ *   GET    /api/documents/search/stats      — contatori delle cache di ricerca
+ *   GET    /api/documents                   — lista i documenti (pageSize/cursor, NDJSON in streaming)
+ *   GET    /api/documents/stats             — statistiche aggregate dello store (globali o per progetto)
+ *   GET    /api/documents/{documentId}      — dettaglio e chunk preview di un documento (offset/limit)
  *   DELETE /api/documents/{documentId}      — rimuove un documento dall'indice
  *   PUT    /api/documents/{documentId}      — sostituisce un documento con una nuova versione
+ *   GET    /api/documents/jobs/{jobId}      — stato di un job di ingestione asincrona
  *
  * Il documentId (UUID) viene generato all'ingestione e restituito nella risposta.
  * Nota: i path letterali /search e /stats hanno priorità su /{documentId} in Spring MVC,
@@ -38,16 +64,42 @@ public class DocumentController {
 
     private static final Logger log = LoggerFactory.getLogger(DocumentController.class);
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Dimensione massima del file per ingest e re-ingest di un singolo documento. Il limite multipart
+     * di Spring è più alto perché un archivio ZIP di POST /ingest/bulk arriva come una sola parte.
+     */
+    @Value("${ingest.max-file-size:50MB}")
+    private DataSize maxFileSize;
+
     private final IngestionService ingestionService;
+    private final IngestionJobService jobService;
+    private final BulkIngestionService bulkService;
     private final SearchService searchService;
+    private final FairScheduler scheduler;
     private final DocumentRegistry registry;
+    private final EmbeddingCache embeddingCache;
+    private final ObjectMapper objectMapper;
 
     public DocumentController(IngestionService ingestionService,
+                              IngestionJobService jobService,
+                              BulkIngestionService bulkService,
                               SearchService searchService,
-                              DocumentRegistry registry) {
+                              FairScheduler scheduler,
+                              DocumentRegistry registry,
+                              EmbeddingCache embeddingCache,
+                              ObjectMapper objectMapper) {
         this.ingestionService = ingestionService;
+        this.jobService = jobService;
+        this.bulkService = bulkService;
         this.searchService = searchService;
+        this.scheduler = scheduler;
         this.registry = registry;
+        this.embeddingCache = embeddingCache;
+        this.objectMapper = objectMapper;
     }
 
     // -------------------------------------------------------------------------
@@ -58,20 +110,31 @@ public class DocumentController {
      * Indicizza un documento (PDF o testo).
      * Il parametro projectId è obbligatorio e identifica il progetto di appartenenza.
      * I parametri chunkSize e overlap sono opzionali: se omessi si usano i default (500/50).
+     * Con async=true la richiesta restituisce subito 202 Accepted con lo stato del job
+     * (503 se la coda dei job è piena); l'avanzamento si legge da GET /jobs/{jobId}.
+     * Senza async, 429 con Retry-After se il controllo di ammissione non ha memoria o posti liberi.
+     * 413 se il file supera {@code ingest.max-file-size}.
      *
      * Esempio:
      *   curl -X POST "http://localhost:8889/api/documents/ingest?projectId=prj-acme" \
      *        -F "file=@documento.pdf"
+     * Esempio asincrono:
+     *   curl -X POST "http://localhost:8889/api/documents/ingest?projectId=prj-acme&async=true" \
+     *        -F "file=@documento.pdf"
      */
     @PostMapping("/ingest")
-    public ResponseEntity<DocumentSummary> ingest(
+    public ResponseEntity<?> ingest(
             @RequestParam("file") MultipartFile file,
             @RequestParam("projectId") String projectId,
             @RequestParam(value = "chunkSize", defaultValue = "" + ChunkingParams.DEFAULT_CHUNK_SIZE) int chunkSize,
-            @RequestParam(value = "overlap",   defaultValue = "" + ChunkingParams.DEFAULT_OVERLAP)    int overlap) {
+            @RequestParam(value = "overlap",   defaultValue = "" + ChunkingParams.DEFAULT_OVERLAP)    int overlap,
+            @RequestParam(value = "async",     defaultValue = "false") boolean async) {
         if (file.isEmpty() || projectId.isBlank()) {
             return ResponseEntity.badRequest().build();
         }
+        if (file.getSize() > maxFileSize.toBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
         ChunkingParams params;
         try {
             params = new ChunkingParams(chunkSize, overlap);
@@ -79,14 +142,88 @@ public class DocumentController {
             return ResponseEntity.badRequest().build();
         }
         try {
+            if (async) {
+                return accepted(jobService.submitIngest(file, params, projectId));
+            }
             DocumentSummary summary = ingestionService.ingest(file, params, projectId);
             return ResponseEntity.ok(summary);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (RejectedExecutionException e) {
+            log.warn("Coda job di ingestione piena, richiesta rifiutata: {}", file.getOriginalFilename());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (SchedulerInterruptedException e) {
+            log.warn("Ingestione interrotta: {}", file.getOriginalFilename());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             log.error("Errore durante l'ingestione: {}", file.getOriginalFilename(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    // -------------------------------------------------------------------------
+    // POST /api/documents/ingest/bulk
+    // -------------------------------------------------------------------------
+
+    /**
+     * Indicizza più documenti dello stesso progetto in una sola richiesta: più parti "files"
+     * e/o archivi ZIP, i cui elementi vengono indicizzati come file separati.
+     * La risposta riporta l'esito di ogni file e il throughput complessivo; un file non valido
+     * non interrompe gli altri. Ogni parte (anche un archivio ZIP) può arrivare a
+     * {@code spring.servlet.multipart.max-file-size}; i singoli documenti, file o elementi ZIP,
+     * sono limitati da {@code ingest.bulk.max-entry-size}.
+     * 400 se non ci sono file o se ne superano i limiti,
+     * 503 se sono già in corso troppe ingestioni bulk, 429 con Retry-After se il controllo
+     * di ammissione non ha memoria o posti liberi.
+     *
+     * Esempio:
+     *   curl -X POST "http://localhost:8889/api/documents/ingest/bulk?projectId=prj-acme" \
+     *        -F "files=@contratto.pdf" -F "files=@allegati.zip"
+     */
+    @PostMapping("/ingest/bulk")
+    public ResponseEntity<BulkIngestResult> ingestBulk(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("projectId") String projectId,
+            @RequestParam(value = "chunkSize", defaultValue = "" + ChunkingParams.DEFAULT_CHUNK_SIZE) int chunkSize,
+            @RequestParam(value = "overlap",   defaultValue = "" + ChunkingParams.DEFAULT_OVERLAP)    int overlap) {
+        if (files.isEmpty() || projectId.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(bulkService.ingest(files, new ChunkingParams(chunkSize, overlap), projectId));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ingestione bulk rifiutata: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (RejectedExecutionException e) {
+            log.warn("Ingestione bulk rifiutata: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            log.error("Errore durante l'ingestione bulk (projectId={})", projectId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // GET /api/documents/ingest/stats
+    // -------------------------------------------------------------------------
+
+    /**
+     * Stato dello scheduler equo delle ingestioni: posti occupati, ricerche in corso e,
+     * per ogni progetto, peso, porzioni di lavoro in coda e in esecuzione e attese cumulate.
+     *
+     * Esempio:
+     *   curl http://localhost:8889/api/documents/ingest/stats
+     */
+    @GetMapping("/ingest/stats")
+    public ResponseEntity<SchedulerStats> ingestStats() {
+        return ResponseEntity.ok(scheduler.stats());
+    }
+
     // -------------------------------------------------------------------------
     // GET /api/documents/search?q=...&limit=5
     // -------------------------------------------------------------------------
@@ -94,6 +231,8 @@ public class DocumentController {
     /**
      * Ricerca semantica sui documenti indicizzati.
      * Il parametro projectId è opzionale: se omesso la ricerca avviene su tutti i progetti.
+     * Con explain=true la risposta è un ExplainedSearch: risultati più tempi per fase,
+     * vettori candidati, modalità del filtro progetto e hit delle cache.
      *
      * Esempio scoped:
      *   curl "http://localhost:8889/api/documents/search?q=fattura+2024&projectId=prj-acme&limit=3"
@@ -101,33 +240,106 @@ public class DocumentController {
      *   curl "http://localhost:8889/api/documents/search?q=fattura+2024&limit=3"
      */
     @GetMapping("/search")
-    public ResponseEntity<List<SearchResult>> search(
+    public ResponseEntity<?> search(
             @RequestParam("q") String query,
             @RequestParam(value = "projectId", required = false) String projectId,
-            @RequestParam(value = "limit", defaultValue = "5") int limit) {
+            @RequestParam(value = "limit", defaultValue = "5") int limit,
+            @RequestParam(value = "explain", defaultValue = "false") boolean explain) {
         if (query.isBlank()) {
             return ResponseEntity.badRequest().build();
         }
+        if (explain) {
+            return ResponseEntity.ok(searchService.explain(query, limit, projectId));
+        }
         List<SearchResult> results = searchService.search(query, limit, projectId);
         return ResponseEntity.ok(results);
     }
 
+    // -------------------------------------------------------------------------
+    // POST /api/documents/search/batch
+    // -------------------------------------------------------------------------
+
+    /**
+     * Esegue più ricerche semantiche in una richiesta: gli embedding delle query sono calcolati
+     * insieme e le ricerche procedono in parallelo. La risposta contiene una lista di SearchResult
+     * per ogni ricerca, nello stesso ordine della richiesta.
+     * 400 se una query è vuota, un limit non è positivo o le ricerche superano search.batch.max-queries.
+     *
+     * Esempio:
+     *   curl -X POST http://localhost:8889/api/documents/search/batch \
+     *        -H "Content-Type: application/json" \
+     *        -d '[{"q":"penali","projectId":"prj-acme","limit":3},{"q":"recesso"}]'
+     */
+    @PostMapping("/search/batch")
+    public ResponseEntity<List<List<SearchResult>>> searchBatch(@RequestBody List<SearchQuery> queries) {
+        try {
+            return ResponseEntity.ok(searchService.searchBatch(queries));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ricerca batch rifiutata: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // GET /api/documents/search/stats
+    // -------------------------------------------------------------------------
+
+    /**
+     * Contatori hit/miss delle cache usate dalla ricerca.
+     *
+     * Esempio:
+     *   curl http://localhost:8889/api/documents/search/stats
+     */
+    @GetMapping("/search/stats")
+    public ResponseEntity<SearchStats> searchStats() {
+        return ResponseEntity.ok(searchService.stats());
+    }
+
     // -------------------------------------------------------------------------
     // GET /api/documents
     // -------------------------------------------------------------------------
 
     /**
-     * Restituisce i documenti indicizzati.
+     * Restituisce i documenti indicizzati, dal più recente.
      * Il parametro projectId è opzionale: se presente filtra per progetto.
+     * <ul>
+     *   <li>con pageSize (e cursor dalla pagina precedente) restituisce una {@link DocumentPage};</li>
+     *   <li>con {@code Accept: application/x-ndjson} scrive un DocumentSummary JSON per riga,
+     *       direttamente dal ResultSet e senza costruire la lista in memoria;</li>
+     *   <li>altrimenti restituisce la lista completa.</li>
+     * </ul>
      *
      * Esempio scoped:
      *   curl "http://localhost:8889/api/documents?projectId=prj-acme"
-     * Esempio globale:
-     *   curl http://localhost:8889/api/documents
+     * Esempio paginato:
+     *   curl "http://localhost:8889/api/documents?projectId=prj-acme&pageSize=100"
+     * Esempio streaming:
+     *   curl -H "Accept: application/x-ndjson" "http://localhost:8889/api/documents?projectId=prj-acme"
      */
     @GetMapping
-    public ResponseEntity<List<DocumentSummary>> listDocuments(
-            @RequestParam(value = "projectId", required = false) String projectId) {
+    public ResponseEntity<?> listDocuments(
+            @RequestParam(value = "projectId", required = false) String projectId,
+            @RequestParam(value = "pageSize",  required = false) Integer pageSize,
+            @RequestParam(value = "cursor",    required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (pageSize != null || cursor != null) {
+            int size = pageSize != null ? pageSize : DEFAULT_PAGE_SIZE;
+            if (size < 1 || size > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().build();
+            }
+            try {
+                return ResponseEntity.ok(registry.findPage(projectId, cursor, size));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        if (accept != null && accept.contains(NDJSON)) {
+            StreamingResponseBody body = out -> registry.forEachSummary(projectId, summary -> {
+                out.write(objectMapper.writeValueAsBytes(summary));
+                out.write('\n');
+            });
+            return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+        }
         return ResponseEntity.ok(registry.findAllAsSummary(projectId));
     }
 
@@ -136,19 +348,32 @@ public class DocumentController {
     // -------------------------------------------------------------------------
 
     /**
-     * Statistiche aggregate: numero documenti, chunk totali, tipo di store.
+     * Statistiche aggregate: numero documenti, chunk, byte di testo e sezioni, ultimo ingest,
+     * tipo di store, contatori della embedding cache persistente e del pool di connessioni del registry.
+     * Con projectId i contatori dei documenti si riferiscono al solo progetto indicato.
+     * I contatori sono mantenuti in memoria: la chiamata non interroga DuckDB.
      *
      * Esempio:
      *   curl http://localhost:8889/api/documents/stats
+     * Esempio scoped:
+     *   curl "http://localhost:8889/api/documents/stats?projectId=prj-acme"
      */
     @GetMapping("/stats")
-    public ResponseEntity<StoreStats> stats() {
+    public ResponseEntity<StoreStats> stats(
+            @RequestParam(value = "projectId", required = false) String projectId) {
+        ProjectStats docs = projectId != null ? registry.projectStats(projectId) : registry.globalStats();
         StoreStats stats = new StoreStats(
-                registry.totalDocuments(),
-                registry.totalChunks(),
+                projectId,
+                docs.documents(),
+                docs.chunks(),
+                docs.textBytes(),
+                docs.sections(),
+                docs.lastIngestAt(),
                 "DuckDB",
                 "AllMiniLmL6V2Quantized",
-                false
+                false,
+                embeddingCache.stats(),
+                registry.poolStats()
         );
         return ResponseEntity.ok(stats);
     }
@@ -159,13 +384,23 @@ public class DocumentController {
 
     /**
      * Dettaglio di un singolo documento: metadati e anteprima dei chunk.
+     * offset e limit (opzionali) selezionano una pagina di chunk preview in ordine di documento;
+     * senza limit vengono restituite tutte a partire da offset. chunkCount resta il totale.
      *
      * Esempio:
      *   curl "http://localhost:8889/api/documents/550e8400-e29b-41d4-a716-446655440000"
+     * Esempio paginato:
+     *   curl "http://localhost:8889/api/documents/550e8400-e29b-41d4-a716-446655440000?offset=100&limit=50"
      */
     @GetMapping("/{documentId}")
-    public ResponseEntity<DocumentRecord> getDocument(@PathVariable String documentId) {
-        return registry.findById(documentId)
+    public ResponseEntity<DocumentRecord> getDocument(
+            @PathVariable String documentId,
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit",  required = false) Integer limit) {
+        if (offset < 0 || (limit != null && limit < 0)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return registry.findById(documentId, offset, limit != null ? limit : Integer.MAX_VALUE)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -192,24 +427,32 @@ public class DocumentController {
 
     /**
      * Sostituisce un documento esistente con una nuova versione del file.
-     * Il vecchio contenuto viene rimosso dall'indice attivo; i nuovi chunk
-     * vengono indicizzati con un nuovo documentId (restituito nella risposta).
+     * Il documentId resta invariato. La sostituzione è differenziale: vengono calcolati
+     * e aggiunti solo i chunk nuovi e rimossi solo quelli scomparsi, senza finestre in cui
+     * il documento manca dai risultati di ricerca.
      * I parametri chunkSize e overlap sono opzionali: se omessi si usano i default (500/50).
+     * Con async=true la sostituzione viene accodata come job (202 Accepted); senza,
+     * 429 con Retry-After se il controllo di ammissione non ha memoria o posti liberi.
+     * 413 se il file supera {@code ingest.max-file-size}.
      *
      * Esempio:
      *   curl -X PUT "http://localhost:8889/api/documents/550e8400-e29b-41d4-a716-446655440000?chunkSize=300&overlap=30" \
      *        -F "file=@report_v2.pdf"
      */
     @PutMapping("/{documentId}")
-    public ResponseEntity<DocumentSummary> reingestDocument(
+    public ResponseEntity<?> reingestDocument(
             @PathVariable String documentId,
             @RequestParam("file") MultipartFile file,
             @RequestParam(value = "chunkSize", defaultValue = "" + ChunkingParams.DEFAULT_CHUNK_SIZE) int chunkSize,
-            @RequestParam(value = "overlap",   defaultValue = "" + ChunkingParams.DEFAULT_OVERLAP)    int overlap) {
+            @RequestParam(value = "overlap",   defaultValue = "" + ChunkingParams.DEFAULT_OVERLAP)    int overlap,
+            @RequestParam(value = "async",     defaultValue = "false") boolean async) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
-        var existing = registry.findById(documentId);
+        if (file.getSize() > maxFileSize.toBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        var existing = registry.findSummary(documentId);
         if (existing.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -220,11 +463,53 @@ public class DocumentController {
             return ResponseEntity.badRequest().build();
         }
         try {
+            if (async) {
+                return accepted(jobService.submitReingest(documentId, existing.get().projectId(), file, params));
+            }
             DocumentSummary summary = ingestionService.reingest(documentId, existing.get().projectId(), file, params);
             return ResponseEntity.ok(summary);
+        } catch (AdmissionRejectedException e) {
+            return tooManyRequests(e);
+        } catch (RejectedExecutionException e) {
+            log.warn("Coda job di ingestione piena, re-ingest rifiutato: {}", documentId);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (SchedulerInterruptedException e) {
+            log.warn("Re-ingest interrotto: {}", documentId);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (Exception e) {
             log.error("Errore durante il re-ingest: {}", documentId, e);
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    // -------------------------------------------------------------------------
+    // GET /api/documents/jobs/{jobId}
+    // -------------------------------------------------------------------------
+
+    /**
+     * Stato di un job di ingestione asincrona: fase corrente, contatori di avanzamento
+     * e, a job concluso, il DocumentSummary risultante o il messaggio d'errore.
+     *
+     * Esempio:
+     *   curl http://localhost:8889/api/documents/jobs/7c9e6679-7425-40de-944b-e07fc1f90ae7
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<IngestionJobStatus> getJob(@PathVariable String jobId) {
+        return jobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /** 429 con Retry-After per le ingestioni respinte dal controllo di ammissione. */
+    private static <T> ResponseEntity<T> tooManyRequests(AdmissionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.retryAfterSeconds()))
+                .build();
+    }
+
+    private static ResponseEntity<IngestionJobStatus> accepted(IngestionJobStatus status) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/documents/jobs/" + status.jobId()))
+                .body(status);
+    }
 }
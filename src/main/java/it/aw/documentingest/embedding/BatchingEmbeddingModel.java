@@ -0,0 +1,219 @@
+package it.aw.documentingest.embedding;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * EmbeddingModel che raggruppa le richieste di più chiamanti concorrenti in un'unica
+ * invocazione di {@code embedAll} sul modello sottostante.
+ * <p>
+ * Ogni testo da calcolare viene accodato insieme a una future; i thread dispatcher
+ * attendono al più {@code maxWait} che il batch raggiunga {@code maxBatchSize} elementi,
+ * eseguono un solo {@code embedAll} e completano la future di ciascun testo con il
+ * proprio embedding.
+ * <p>
+ * Priorità: le query di ricerca ({@link #embed(String)}, {@link #embed(TextSegment)})
+ * vanno in una coda separata che viene sempre svuotata prima di quella delle ingestioni
+ * ({@link #embedAll(List)}). Un'ingestione con migliaia di chunk viene quindi consumata a
+ * batch di {@code maxBatchSize}, e le query in arrivo nel frattempo entrano nel batch successivo.
+ */
+public class BatchingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingEmbeddingModel.class);
+
+    /** Classe di priorità di una richiesta di embedding. */
+    public enum Priority { QUERY, BULK }
+
+    private record Pending(TextSegment segment, CompletableFuture<Embedding> result) {}
+
+    private final EmbeddingModel delegate;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final ArrayDeque<Pending> queries = new ArrayDeque<>();
+    private final ArrayDeque<Pending> bulk = new ArrayDeque<>();
+    private final List<Thread> dispatchers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private volatile int lastBatchSize;
+    private volatile IntConsumer batchListener = size -> {};
+
+    public BatchingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, Duration maxWait, int dispatcherThreads) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize deve essere >= 1 (ricevuto: " + maxBatchSize + ")");
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        for (int i = 1; i <= Math.max(dispatcherThreads, 1); i++) {
+            Thread t = new Thread(this::dispatchLoop, "embedding-batcher-" + i);
+            t.setDaemon(true);
+            dispatchers.add(t);
+            t.start();
+        }
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return embed(TextSegment.from(text));
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment textSegment) {
+        return Response.from(await(enqueue(List.of(textSegment), Priority.QUERY)).get(0));
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        return embedAll(textSegments, Priority.BULK);
+    }
+
+    /** Calcola gli embedding dei segmenti con la priorità indicata, preservandone l'ordine. */
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments, Priority priority) {
+        if (textSegments.isEmpty()) return Response.from(List.of());
+        return Response.from(await(enqueue(textSegments, priority)));
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatchers.forEach(Thread::interrupt);
+        lock.lock();
+        try {
+            CancellationException cause = new CancellationException("BatchingEmbeddingModel chiuso");
+            queries.forEach(p -> p.result().completeExceptionally(cause));
+            bulk.forEach(p -> p.result().completeExceptionally(cause));
+            queries.clear();
+            bulk.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<CompletableFuture<Embedding>> enqueue(List<TextSegment> segments, Priority priority) {
+        List<CompletableFuture<Embedding>> futures = new ArrayList<>(segments.size());
+        lock.lock();
+        try {
+            if (!running) throw new IllegalStateException("BatchingEmbeddingModel chiuso");
+            ArrayDeque<Pending> queue = priority == Priority.QUERY ? queries : bulk;
+            for (TextSegment segment : segments) {
+                CompletableFuture<Embedding> f = new CompletableFuture<>();
+                queue.addLast(new Pending(segment, f));
+                futures.add(f);
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return futures;
+    }
+
+    private static List<Embedding> await(List<CompletableFuture<Embedding>> futures) {
+        List<Embedding> embeddings = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<Embedding> f : futures) {
+                embeddings.add(f.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+        return embeddings;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            List<Pending> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                if (!running) return;
+                continue;
+            }
+            if (batch.isEmpty()) continue;
+            try {
+                List<TextSegment> segments = new ArrayList<>(batch.size());
+                for (Pending p : batch) segments.add(p.segment());
+                lastBatchSize = batch.size();
+                batchListener.accept(batch.size());
+                List<Embedding> embeddings = delegate.embedAll(segments).content();
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result().complete(embeddings.get(i));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Errore embedding su batch di {} testi: {}", batch.size(), e.getMessage());
+                batch.forEach(p -> p.result().completeExceptionally(e));
+            }
+        }
+    }
+
+    /**
+     * Attende il primo elemento, poi al più {@code maxWait} perché il batch si riempia.
+     * Le query vengono prelevate prima dei testi di ingestione.
+     */
+    private List<Pending> nextBatch() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queries.isEmpty() && bulk.isEmpty()) {
+                notEmpty.await();
+            }
+            long remaining = maxWaitNanos;
+            while (queries.size() + bulk.size() < maxBatchSize && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            List<Pending> batch = new ArrayList<>(Math.min(maxBatchSize, queries.size() + bulk.size()));
+            while (batch.size() < maxBatchSize && !queries.isEmpty()) batch.add(queries.pollFirst());
+            while (batch.size() < maxBatchSize && !bulk.isEmpty()) batch.add(bulk.pollFirst());
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Dimensione massima di un batch inviato al modello sottostante. */
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /** Numero di testi dell'ultimo batch inviato al modello. */
+    public int lastBatchSize() {
+        return lastBatchSize;
+    }
+
+    /** Riceve la dimensione di ogni batch prima dell'invio al modello (es. per le metriche). */
+    public void setBatchListener(IntConsumer listener) {
+        this.batchListener = listener != null ? listener : size -> {};
+    }
+
+    /** Testi in attesa di essere inviati al modello, per classe di priorità. */
+    public int pending(Priority priority) {
+        lock.lock();
+        try {
+            return priority == Priority.QUERY ? queries.size() : bulk.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
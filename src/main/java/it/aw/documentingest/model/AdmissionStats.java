@@ -0,0 +1,15 @@
+package it.aw.documentingest.model;
+
+/**
+ * Stato del controllo di ammissione delle ingestioni: memoria stimata riservata dalle
+ * ingestioni in corso rispetto al budget, richieste in attesa e rifiutate.
+ */
+public record AdmissionStats(
+        long budgetBytes,
+        long reservedBytes,   // somma dei costi stimati delle ingestioni in corso
+        int  maxConcurrent,
+        int  inFlight,
+        int  queued,          // richieste in attesa di un posto o di memoria
+        long admitted,
+        long rejected         // richieste respinte con 429 (coda piena o attesa scaduta)
+) {}
@@ -0,0 +1,16 @@
+package it.aw.documentingest.model;
+
+/**
+ * Esito di un singolo file di un'ingestione bulk.
+ * {@code document} è valorizzato solo con state COMPLETED, {@code error} con state FAILED
+ * (messaggio d'errore) o SKIPPED (motivo dell'esclusione).
+ */
+public record BulkFileResult(
+        String          filename,        // nome del file o percorso dell'elemento nello ZIP
+        State           state,
+        DocumentSummary document,
+        String          error
+) {
+    /** SKIPPED: file con estensione non ammessa ({@code ingest.bulk.extensions}), non indicizzato. */
+    public enum State { COMPLETED, FAILED, SKIPPED }
+}
@@ -0,0 +1,20 @@
+package it.aw.documentingest.model;
+
+import java.util.List;
+
+/**
+ * Risposta di POST /api/documents/ingest/bulk: esito per file nell'ordine di caricamento
+ * (per gli ZIP, nell'ordine degli elementi nell'archivio) e throughput complessivo.
+ */
+public record BulkIngestResult(
+        String               projectId,
+        int                  files,
+        int                  completed,
+        int                  failed,
+        int                  skipped,          // file esclusi per estensione
+        long                 chunks,           // chunk indicizzati dai file completati
+        double               elapsedSeconds,
+        double               filesPerSecond,
+        double               chunksPerSecond,
+        List<BulkFileResult> results
+) {}
@@ -0,0 +1,12 @@
+package it.aw.documentingest.model;
+
+/**
+ * Contatori di una cache (in memoria o persistente).
+ */
+public record CacheStats(
+        long hits,
+        long misses,
+        long evictions,     // voci rimosse per limite di dimensione o scadenza TTL
+        int  size,          // voci presenti
+        long estimatedBytes // occupazione stimata (heap per le cache in memoria, vettori su disco per quella persistente)
+) {}
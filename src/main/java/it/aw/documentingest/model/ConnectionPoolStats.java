@@ -0,0 +1,17 @@
+package it.aw.documentingest.model;
+
+/**
+ * Stato del pool di connessioni DuckDB del registry: lettori concorrenti e scrittore unico.
+ * I tempi di attesa sono misurati dall'ingresso nel pool all'ottenimento della connessione.
+ */
+public record ConnectionPoolStats(
+        int  readers,            // connessioni di lettura nel pool
+        int  idleReaders,        // connessioni di lettura libere in questo momento
+        long readAcquisitions,
+        long readWaitTotalMs,
+        long readWaitMaxMs,
+        long writeAcquisitions,
+        long writeWaitTotalMs,
+        long writeWaitMaxMs,
+        int  waitingWriters      // thread in coda per la connessione di scrittura
+) {}
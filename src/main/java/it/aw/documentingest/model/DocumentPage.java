@@ -0,0 +1,14 @@
+package it.aw.documentingest.model;
+
+import java.util.List;
+
+/**
+ * Pagina della lista documenti, ordinata per {@code ingestedAt} decrescente (a parità, documentId).
+ * <p>
+ * Restituita da GET /api/documents quando è indicato pageSize o cursor.
+ * {@code nextCursor} va passato come parametro cursor per la pagina successiva; è null sull'ultima.
+ */
+public record DocumentPage(
+        List<DocumentSummary> items,
+        String                nextCursor
+) {}
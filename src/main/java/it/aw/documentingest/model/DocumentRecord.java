@@ -19,11 +19,13 @@ public record DocumentRecord(
         int              chunkSize,
         int              overlap,
         int              sectionCount,      // sezioni distinte rilevate (0 = documento piatto)
+        int              cachedChunks,      // chunk il cui embedding proveniva dalla embedding cache
+        long             textBytes,         // byte (UTF-8) del testo estratto dal documento
         List<ChunkInfo>  chunkPreviews      // dettaglio chunk con sezione e pagina
 ) {
     /** Proietta il record nella vista leggera senza chunk preview. */
     public DocumentSummary toSummary() {
         return new DocumentSummary(projectId, documentId, filename, ingestedAt,
-                chunkCount, chunkSize, overlap, sectionCount);
+                chunkCount, chunkSize, overlap, sectionCount, cachedChunks, textBytes);
     }
 }
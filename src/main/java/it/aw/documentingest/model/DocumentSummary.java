@@ -16,5 +16,7 @@ public record DocumentSummary(
         int           chunkCount,
         int           chunkSize,
         int           overlap,
-        int           sectionCount  // sezioni distinte rilevate (0 = documento piatto)
+        int           sectionCount, // sezioni distinte rilevate (0 = documento piatto)
+        int           cachedChunks, // chunk il cui embedding proveniva dalla embedding cache
+        long          textBytes     // byte (UTF-8) del testo estratto dal documento
 ) {}
@@ -0,0 +1,11 @@
+package it.aw.documentingest.model;
+
+import java.util.List;
+
+/**
+ * Risposta di GET /api/documents/search con {@code explain=true}: risultati e diagnostica.
+ */
+public record ExplainedSearch(
+        List<SearchResult> results,
+        SearchExplain      explain
+) {}
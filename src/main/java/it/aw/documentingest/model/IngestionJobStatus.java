@@ -0,0 +1,28 @@
+package it.aw.documentingest.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stato di un job di ingestione asincrona.
+ * <p>
+ * Restituito da POST /ingest?async=true (202 Accepted) e da GET /api/documents/jobs/{jobId}.
+ * Il campo {@code result} è valorizzato solo a job COMPLETED, {@code error} solo a job FAILED.
+ */
+public record IngestionJobStatus(
+        String          jobId,
+        State           state,
+        IngestionStage  stage,           // fase corrente (null finché il job è in coda)
+        String          projectId,
+        String          filename,
+        String          replacesDocumentId, // documentId sostituito (solo re-ingest, altrimenti null)
+        LocalDateTime   submittedAt,
+        LocalDateTime   startedAt,
+        LocalDateTime   finishedAt,
+        int             totalPages,      // pagine del PDF (0 per file di testo o prima del parse)
+        int             totalChunks,     // chunk prodotti dallo splitting
+        int             embeddedChunks,  // chunk già trasformati in embedding
+        DocumentSummary result,
+        String          error
+) {
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+}
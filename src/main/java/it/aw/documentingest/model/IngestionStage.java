@@ -0,0 +1,15 @@
+package it.aw.documentingest.model;
+
+/**
+ * Fasi della pipeline di ingestione, nell'ordine in cui vengono eseguite
+ * da IngestionService.
+ */
+public enum IngestionStage {
+    PARSE,      // estrazione testo (PDF pagina per pagina o testo grezzo)
+    DETECT,     // rilevamento heading di sezione
+    SPLIT,      // chunking del testo completo
+    ENRICH,     // calcolo sezione e page range di ogni chunk
+    EMBED,      // calcolo degli embedding
+    STORE,      // scrittura nell'embedding store
+    REGISTER    // registrazione del DocumentRecord nel registry
+}
@@ -0,0 +1,15 @@
+package it.aw.documentingest.model;
+
+/**
+ * Coda di un progetto nello scheduler equo delle ingestioni: peso, porzioni di lavoro
+ * (embedding o scrittura) in attesa e in esecuzione, attese cumulate.
+ */
+public record ProjectQueueStats(
+        String projectId,
+        double weight,
+        int    queued,        // porzioni in attesa di un posto
+        int    running,       // porzioni in esecuzione
+        long   slices,        // porzioni eseguite dall'avvio
+        long   waitTotalMs,
+        long   waitMaxMs
+) {}
@@ -0,0 +1,15 @@
+package it.aw.documentingest.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Contatori aggregati dei documenti di un progetto (o dell'intero registry se projectId è null).
+ */
+public record ProjectStats(
+        String        projectId,
+        int           documents,
+        long          chunks,
+        long          textBytes,     // byte (UTF-8) di testo indicizzato
+        long          sections,      // somma delle sezioni L1 rilevate nei documenti
+        LocalDateTime lastIngestAt   // ultimo ingest registrato, null se nessuno
+) {}
@@ -0,0 +1,14 @@
+package it.aw.documentingest.model;
+
+import java.util.List;
+
+/**
+ * Stato dello scheduler equo tra progetti per embedding e scritture delle ingestioni.
+ */
+public record SchedulerStats(
+        int slots,                        // porzioni di ingestione concorrenti senza ricerche in corso
+        int slotsDuringSearch,            // porzioni concorrenti mentre è in corso almeno una ricerca
+        int running,
+        int activeSearches,
+        List<ProjectQueueStats> projects  // ordinati per coda decrescente
+) {}
@@ -0,0 +1,22 @@
+package it.aw.documentingest.model;
+
+/**
+ * Diagnostica di una ricerca semantica, restituita con {@code explain=true}
+ * e scritta nel log delle query lente.
+ * <p>
+ * I tempi delle fasi embed/store/map sono zero quando la risposta arriva dalla cache dei risultati.
+ */
+public record SearchExplain(
+        String  query,                 // testo normalizzato
+        String  projectId,             // null per le ricerche globali
+        int     limit,
+        boolean resultCacheHit,
+        Boolean queryEmbeddingCacheHit, // null se la cache dei risultati ha evitato la ricerca
+        double  embedMs,               // embedding della query (inclusa la lookup in cache)
+        double  storeMs,               // embeddingStore.search
+        double  mapMs,                 // conversione dei match in SearchResult
+        double  totalMs,
+        long    indexedChunks,         // chunk nello scope secondo il registry: stima dei vettori confrontati
+        String  storeFilter,           // filtro passato alla ricerca sullo store, null se assente
+        int     returned
+) {}
@@ -0,0 +1,17 @@
+package it.aw.documentingest.model;
+
+/**
+ * Singola ricerca di POST /api/documents/search/batch.
+ * Stessi parametri di GET /api/documents/search: projectId null = tutti i progetti, limit null = 5.
+ */
+public record SearchQuery(
+        String  q,
+        String  projectId,
+        Integer limit
+) {
+    public static final int DEFAULT_LIMIT = 5;
+
+    public int limitOrDefault() {
+        return limit != null ? limit : DEFAULT_LIMIT;
+    }
+}
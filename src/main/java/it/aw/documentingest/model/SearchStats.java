@@ -0,0 +1,9 @@
+package it.aw.documentingest.model;
+
+/**
+ * Statistiche delle cache usate dalla ricerca semantica.
+ */
+public record SearchStats(
+        CacheStats queryEmbeddingCache,  // embedding delle query, chiave = testo normalizzato
+        CacheStats resultCache           // risultati completi, chiave = (query, projectId, limit)
+) {}
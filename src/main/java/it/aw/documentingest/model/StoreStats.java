@@ -1,12 +1,21 @@
 package it.aw.documentingest.model;
 
+import java.time.LocalDateTime;
+
 /**
- * Statistiche aggregate sullo stato dell'embedding store.
+ * Statistiche aggregate sullo stato dell'embedding store, globali o di un singolo progetto.
+ * I contatori dei documenti sono mantenuti in memoria dal registry.
  */
 public record StoreStats(
-        int totalDocuments,
-        int totalChunks,
-        String storeType,
-        String embeddingModel,
-        boolean ephemeral
+        String        projectId,        // progetto richiesto, null per le statistiche globali
+        int           totalDocuments,
+        long          totalChunks,
+        long          textBytes,        // byte (UTF-8) di testo indicizzato
+        long          totalSections,    // sezioni L1 rilevate nei documenti
+        LocalDateTime lastIngestAt,     // ultimo ingest registrato, null se nessuno
+        String        storeType,
+        String        embeddingModel,
+        boolean       ephemeral,
+        CacheStats    embeddingCache,   // cache persistente degli embedding dei chunk
+        ConnectionPoolStats registryPool // connessioni DuckDB del registry
 ) {}
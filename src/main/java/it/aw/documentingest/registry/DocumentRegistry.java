@@ -1,11 +1,13 @@
 package it.aw.documentingest.registry;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import it.aw.documentingest.model.ChunkInfo;
+import it.aw.documentingest.model.ConnectionPoolStats;
+import it.aw.documentingest.model.DocumentPage;
 import it.aw.documentingest.model.DocumentRecord;
 import it.aw.documentingest.model.DocumentSummary;
+import it.aw.documentingest.model.ProjectStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,25 +16,37 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
- * Registro dei documenti indicizzati, persistito nella tabella {@code documents}
- * dello stesso file DuckDB usato dall'embedding store.
+ * Registro dei documenti indicizzati, persistito nello stesso file DuckDB usato dall'embedding store:
+ * la tabella {@code documents} contiene una riga per documento, la tabella {@code chunks} una riga
+ * per chunk (ID nello store, hash del testo e anteprima con sezione e pagina), con chiave
+ * {@code (document_id, ordinal)}.
  * <p>
- * Un'unica connessione JDBC è condivisa da tutte le operazioni; l'accesso
- * è sincronizzato per garantire la thread-safety (DuckDBConnection non è thread-safe).
+ * Le letture usano un pool di connessioni duplicate ({@link DuckDbConnectionPool}) e procedono
+ * in parallelo; le scritture sono serializzate sulla connessione principale, quindi una lettura
+ * lenta non blocca le altre e vede sempre l'ultimo stato committato.
  * La persistenza è automatica: non è richiesto alcun salvataggio esplicito a shutdown.
  * <p>
  * Migrazione schema: se all'avvio la colonna {@code section_count} non esiste
  * (schema v1 senza info di sezione), la tabella viene ricreata con lo schema corrente.
- * I documenti esistenti devono essere re-indicizzati.
+ * I documenti esistenti devono essere re-indicizzati. I registry con i chunk salvati come JSON
+ * nelle colonne {@code chunk_previews}/{@code chunk_ids}/{@code chunk_hashes} vengono invece
+ * convertiti automaticamente nella tabella {@code chunks}.
  */
 @Component
 public class DocumentRegistry {
@@ -49,18 +63,66 @@ public class DocumentRegistry {
                 chunk_size     INTEGER   NOT NULL,
                 overlap        INTEGER   NOT NULL,
                 section_count  INTEGER   NOT NULL DEFAULT 0,
-                chunk_previews VARCHAR   NOT NULL,
-                chunk_ids      VARCHAR   NOT NULL
+                cached_chunks  INTEGER   NOT NULL DEFAULT 0,
+                text_bytes     BIGINT    NOT NULL DEFAULT 0
             )
             """;
 
+    // Nessun vincolo di unicità su (document_id, ordinal): il re-ingest cancella e reinserisce
+    // le stesse chiavi nella stessa transazione, che DuckDB non consente sotto un indice unico.
+    private static final String CREATE_CHUNKS_TABLE = """
+            CREATE TABLE IF NOT EXISTS chunks (
+                document_id   VARCHAR NOT NULL,
+                ordinal       INTEGER NOT NULL,
+                chunk_id      VARCHAR NOT NULL,
+                content_hash  VARCHAR,
+                section_index INTEGER NOT NULL,
+                section_l1    VARCHAR,
+                section_l2    VARCHAR,
+                section_l3    VARCHAR,
+                section_title VARCHAR NOT NULL,
+                section_path  VARCHAR NOT NULL,
+                section_level INTEGER NOT NULL,
+                page_start    INTEGER,
+                page_end      INTEGER,
+                preview       VARCHAR NOT NULL
+            )
+            """;
+
+    private static final String CREATE_CHUNKS_INDEX =
+            "CREATE INDEX IF NOT EXISTS chunks_document_idx ON chunks (document_id)";
+
+    private static final String INSERT_CHUNK = """
+            INSERT INTO chunks
+                (document_id, ordinal, chunk_id, content_hash, section_index, section_l1, section_l2, section_l3,
+                 section_title, section_path, section_level, page_start, page_end, preview)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String SUMMARY_COLUMNS =
+            "document_id, project_id, filename, ingested_at, chunk_count, chunk_size, overlap, section_count, cached_chunks, " +
+            "text_bytes";
+
+    // Solo per la conversione dei registry con i chunk in JSON
     private static final TypeReference<List<ChunkInfo>> CHUNK_LIST_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<String>> STRING_LIST_TYPE = new TypeReference<>() {};
+
+    /** Righe lette per ogni query di {@link #forEachSummary}. */
+    private static final int STREAM_PAGE_SIZE = 500;
 
     @Value("${store.embedding.path}")
     private String dbPath;
 
+    @Value("${registry.read-pool.size:4}")
+    private int readPoolSize;
+
+    @Value("${registry.read-pool.acquire-timeout:30s}")
+    private Duration acquireTimeout;
+
     private final ObjectMapper objectMapper;
     private Connection conn;
+    private DuckDbConnectionPool pool;
+    private final ProjectStatsIndex stats = new ProjectStatsIndex();
 
     public DocumentRegistry(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
@@ -74,21 +136,24 @@ public class DocumentRegistry {
         migrateIfNeeded();
         try (Statement stmt = conn.createStatement()) {
             stmt.execute(CREATE_TABLE);
+            stmt.execute(CREATE_CHUNKS_TABLE);
+            stmt.execute(CREATE_CHUNKS_INDEX);
+            // Colonne aggiunte senza ricreare la tabella
+            stmt.execute("ALTER TABLE documents ADD COLUMN IF NOT EXISTS text_bytes BIGINT DEFAULT 0");
         }
-        log.info("DocumentRegistry: tabella 'documents' pronta su {}", path.toAbsolutePath());
+        pool = new DuckDbConnectionPool(conn, readPoolSize, acquireTimeout);
+        rebuildStats();
+        log.info("DocumentRegistry: tabelle 'documents' e 'chunks' pronte su {} ({} connessioni di lettura)",
+                path.toAbsolutePath(), readPoolSize);
     }
 
-    /** Rileva schema obsoleto e ricrea la tabella se necessario. */
-    private void migrateIfNeeded() throws SQLException {
-        java.util.Set<String> required = java.util.Set.of("section_count", "chunk_ids", "project_id");
-        java.util.Set<String> existing = new java.util.HashSet<>();
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT column_name FROM information_schema.columns WHERE table_name = 'documents'")) {
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) existing.add(rs.getString(1));
-            }
-        }
-        boolean needsDrop = !existing.isEmpty() && !existing.containsAll(required);
+    /** Rileva schema obsoleto e ricrea la tabella se necessario; converte i chunk in JSON. */
+    private void migrateIfNeeded() throws SQLException, IOException {
+        Set<String> required = Set.of("section_count", "project_id");
+        Set<String> existing = columnsOf("documents");
+        boolean jsonChunks = existing.contains("chunk_ids");
+        boolean needsDrop = !existing.isEmpty()
+                && (!existing.containsAll(required) || (!jsonChunks && columnsOf("chunks").isEmpty()));
         // Verifica che document_id sia la chiave primaria (schema v3+)
         if (!needsDrop && !existing.isEmpty()) {
             try (Statement stmt = conn.createStatement();
@@ -105,157 +170,504 @@ public class DocumentRegistry {
             }
             log.warn("DocumentRegistry: schema obsoleto rilevato — tabella 'documents' ricreata. " +
                      "Re-indicizzare i documenti esistenti.");
+        } else if (jsonChunks) {
+            migrateJsonChunks(existing);
+        }
+    }
+
+    private Set<String> columnsOf(String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT column_name FROM information_schema.columns WHERE table_name = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) columns.add(rs.getString(1));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Sposta i chunk salvati come JSON in {@code documents} nella tabella {@code chunks} e ricrea
+     * {@code documents} senza le colonne JSON, in un'unica transazione.
+     */
+    private void migrateJsonChunks(Set<String> existing) throws SQLException, IOException {
+        String cachedChunks = existing.contains("cached_chunks") ? "cached_chunks" : "0";
+        String hashes = existing.contains("chunk_hashes") ? "chunk_hashes" : "'[]'";
+        int documents = 0;
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_CHUNKS_TABLE);
+            try (ResultSet rs = stmt.executeQuery(
+                         "SELECT document_id, chunk_ids, " + hashes + " AS chunk_hashes, chunk_previews FROM documents");
+                 PreparedStatement insert = conn.prepareStatement(INSERT_CHUNK)) {
+                while (rs.next()) {
+                    List<String> ids = objectMapper.readValue(rs.getString("chunk_ids"), STRING_LIST_TYPE);
+                    List<String> chunkHashes = objectMapper.readValue(rs.getString("chunk_hashes"), STRING_LIST_TYPE);
+                    List<ChunkInfo> previews = objectMapper.readValue(rs.getString("chunk_previews"), CHUNK_LIST_TYPE);
+                    if (chunkHashes.size() != ids.size()) chunkHashes = null; // impronte assenti o incoerenti
+                    addChunks(insert, rs.getString("document_id"), ids, chunkHashes, previews);
+                    insert.executeBatch();
+                    documents++;
+                }
+            }
+            stmt.execute("CREATE TEMP TABLE documents_migration AS SELECT document_id, project_id, filename, " +
+                         "ingested_at, chunk_count, chunk_size, overlap, section_count, " +
+                         cachedChunks + " AS cached_chunks FROM documents");
+            stmt.execute("DROP TABLE documents");
+            stmt.execute(CREATE_TABLE);
+            stmt.execute("INSERT INTO documents (document_id, project_id, filename, ingested_at, chunk_count, " +
+                         "chunk_size, overlap, section_count, cached_chunks) SELECT * FROM documents_migration");
+            stmt.execute("DROP TABLE documents_migration");
+            conn.commit();
+        } catch (SQLException | IOException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
         }
+        log.info("DocumentRegistry: chunk di {} documenti convertiti da JSON alla tabella 'chunks'", documents);
     }
 
     @PreDestroy
     void close() {
-        try {
-            if (conn != null && !conn.isClosed()) conn.close();
-        } catch (SQLException e) {
-            log.warn("Errore chiusura connessione DuckDB registry: {}", e.getMessage());
+        if (pool != null) pool.close();
+    }
+
+    /**
+     * Pool condiviso dalle altre tabelle dello stesso file DuckDB (EmbeddingCache, WatchedFileIndex):
+     * una sola connessione principale e un solo lock di scrittura per tutto il processo.
+     */
+    DuckDbConnectionPool pool() {
+        return pool;
+    }
+
+    /** Connessioni di lettura, scrittore e tempi di attesa sul pool. */
+    public ConnectionPoolStats poolStats() {
+        return pool.stats();
+    }
+
+    /** Statistiche dell'intero registry, servite dalla memoria. */
+    public ProjectStats globalStats() {
+        return stats.global();
+    }
+
+    /** Statistiche di un progetto (contatori a zero se non ha documenti), servite dalla memoria. */
+    public ProjectStats projectStats(String projectId) {
+        return stats.project(projectId);
+    }
+
+    /** Statistiche di tutti i progetti con almeno un documento. */
+    public List<ProjectStats> allProjectStats() {
+        return stats.projects();
+    }
+
+    /** Ricalcola le statistiche per progetto dal database; eseguito all'avvio. */
+    private void rebuildStats() throws SQLException {
+        List<ProjectStats> projects = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("""
+                     SELECT project_id, COUNT(*), SUM(chunk_count), SUM(text_bytes), SUM(section_count), MAX(ingested_at)
+                     FROM documents GROUP BY project_id
+                     """)) {
+            while (rs.next()) {
+                projects.add(new ProjectStats(rs.getString(1), rs.getInt(2), rs.getLong(3), rs.getLong(4),
+                        rs.getLong(5), rs.getTimestamp(6).toLocalDateTime()));
+            }
         }
+        stats.reset(projects);
+        log.info("DocumentRegistry: statistiche di {} progetti caricate", projects.size());
     }
 
-    public synchronized void register(DocumentRecord record, List<String> chunkIds) {
-        String sql = """
-                INSERT INTO documents
-                    (document_id, project_id, filename, ingested_at, chunk_count, chunk_size, overlap, section_count, chunk_previews, chunk_ids)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                ON CONFLICT (document_id) DO UPDATE SET
-                    project_id     = EXCLUDED.project_id,
-                    filename       = EXCLUDED.filename,
-                    ingested_at    = EXCLUDED.ingested_at,
-                    chunk_count    = EXCLUDED.chunk_count,
-                    chunk_size     = EXCLUDED.chunk_size,
-                    overlap        = EXCLUDED.overlap,
-                    section_count  = EXCLUDED.section_count,
-                    chunk_previews = EXCLUDED.chunk_previews,
-                    chunk_ids      = EXCLUDED.chunk_ids
-                """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, record.documentId());
-            ps.setString(2, record.projectId());
-            ps.setString(3, record.filename());
-            ps.setTimestamp(4, Timestamp.valueOf(record.ingestedAt()));
-            ps.setInt(5, record.chunkCount());
-            ps.setInt(6, record.chunkSize());
-            ps.setInt(7, record.overlap());
-            ps.setInt(8, record.sectionCount());
-            ps.setString(9, objectMapper.writeValueAsString(record.chunkPreviews()));
-            ps.setString(10, objectMapper.writeValueAsString(chunkIds));
-            ps.executeUpdate();
-        } catch (SQLException | JsonProcessingException e) {
+    /** Documento da registrare con i suoi chunk, per {@link #registerAll(List)}. */
+    public record Registration(DocumentRecord record, List<String> chunkIds, List<String> chunkHashes) {}
+
+    private static final String UPSERT_DOCUMENT = """
+            INSERT INTO documents
+                (document_id, project_id, filename, ingested_at, chunk_count, chunk_size, overlap, section_count,
+                 cached_chunks, text_bytes)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (document_id) DO UPDATE SET
+                project_id     = EXCLUDED.project_id,
+                filename       = EXCLUDED.filename,
+                ingested_at    = EXCLUDED.ingested_at,
+                chunk_count    = EXCLUDED.chunk_count,
+                chunk_size     = EXCLUDED.chunk_size,
+                overlap        = EXCLUDED.overlap,
+                section_count  = EXCLUDED.section_count,
+                cached_chunks  = EXCLUDED.cached_chunks,
+                text_bytes     = EXCLUDED.text_bytes
+            """;
+
+    /**
+     * Inserisce o sostituisce (stesso documentId) il record di un documento e i suoi chunk.
+     * {@code chunkHashes} contiene l'hash del testo di ogni chunk, nello stesso ordine di {@code chunkIds}
+     * e di {@code record.chunkPreviews()}, usata dal re-ingest differenziale.
+     */
+    public void register(DocumentRecord record, List<String> chunkIds, List<String> chunkHashes) {
+        registerAll(List.of(new Registration(record, chunkIds, chunkHashes)));
+    }
+
+    /**
+     * Come {@link #register}, per più documenti in un'unica transazione: o vengono registrati
+     * tutti o nessuno. Usato dall'ingestione bulk per ridurre le transazioni sul database.
+     */
+    public void registerAll(List<Registration> registrations) {
+        if (registrations.isEmpty()) return;
+        List<DocumentSummary> replaced;
+        try {
+            replaced = pool.writeInTransaction(c -> {
+                List<DocumentSummary> previous = new ArrayList<>(registrations.size());
+                try (PreparedStatement upsert = c.prepareStatement(UPSERT_DOCUMENT);
+                     PreparedStatement insert = c.prepareStatement(INSERT_CHUNK)) {
+                    for (Registration r : registrations) {
+                        DocumentRecord record = r.record();
+                        previous.add(findSummary(c, record.documentId()).orElse(null));
+                        upsert.setString(1, record.documentId());
+                        upsert.setString(2, record.projectId());
+                        upsert.setString(3, record.filename());
+                        upsert.setTimestamp(4, Timestamp.valueOf(record.ingestedAt()));
+                        upsert.setInt(5, record.chunkCount());
+                        upsert.setInt(6, record.chunkSize());
+                        upsert.setInt(7, record.overlap());
+                        upsert.setInt(8, record.sectionCount());
+                        upsert.setInt(9, record.cachedChunks());
+                        upsert.setLong(10, record.textBytes());
+                        upsert.executeUpdate();
+                        deleteChunks(c, record.documentId());
+                        addChunks(insert, record.documentId(), r.chunkIds(), r.chunkHashes(), record.chunkPreviews());
+                    }
+                    insert.executeBatch();
+                }
+                return previous;
+            });
+        } catch (SQLException | IOException e) {
             throw new RuntimeException("Errore salvataggio documento nel registry", e);
         }
+        for (int i = 0; i < registrations.size(); i++) {
+            stats.apply(replaced.get(i), registrations.get(i).record().toSummary());
+        }
     }
 
-    public synchronized Optional<DocumentRecord> findById(String documentId) {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT * FROM documents WHERE document_id = ?")) {
-            ps.setString(1, documentId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return Optional.of(toRecord(rs));
-            }
+    /** Dettaglio del documento con tutte le preview dei chunk. */
+    public Optional<DocumentRecord> findById(String documentId) {
+        return findById(documentId, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Dettaglio del documento con le preview dei chunk nell'intervallo di ordinali
+     * {@code [offset, offset + limit)}; {@code chunkCount} resta il totale del documento.
+     */
+    public Optional<DocumentRecord> findById(String documentId, int offset, int limit) {
+        try {
+            return pool.read(c -> {
+                Optional<DocumentSummary> summary = findSummary(c, documentId);
+                if (summary.isEmpty()) return Optional.<DocumentRecord>empty();
+                DocumentSummary d = summary.get();
+                return Optional.of(new DocumentRecord(d.projectId(), d.documentId(), d.filename(), d.ingestedAt(),
+                        d.chunkCount(), d.chunkSize(), d.overlap(), d.sectionCount(), d.cachedChunks(),
+                        d.textBytes(), findPreviews(c, documentId, offset, limit)));
+            });
         } catch (SQLException | IOException e) {
             throw new RuntimeException("Errore lettura documento dal registry", e);
         }
-        return Optional.empty();
     }
 
-    public synchronized List<DocumentRecord> findAll() {
-        List<DocumentRecord> result = new ArrayList<>();
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT * FROM documents ORDER BY ingested_at DESC")) {
-            while (rs.next()) result.add(toRecord(rs));
+    /** Dati di sintesi del documento, senza leggere i chunk. */
+    public Optional<DocumentSummary> findSummary(String documentId) {
+        try {
+            return pool.read(c -> findSummary(c, documentId));
         } catch (SQLException | IOException e) {
-            throw new RuntimeException("Errore lettura registry", e);
+            throw new RuntimeException("Errore lettura documento dal registry", e);
         }
-        return result;
     }
 
-    public synchronized List<DocumentSummary> findAllAsSummary() {
+    public List<DocumentSummary> findAllAsSummary() {
         return findAllAsSummary(null);
     }
 
-    public synchronized List<DocumentSummary> findAllAsSummary(String projectId) {
-        List<DocumentSummary> result = new ArrayList<>();
+    public List<DocumentSummary> findAllAsSummary(String projectId) {
         String sql = projectId != null
-                ? "SELECT document_id, project_id, filename, ingested_at, chunk_count, chunk_size, overlap, section_count " +
-                  "FROM documents WHERE project_id = ? ORDER BY ingested_at DESC"
-                : "SELECT document_id, project_id, filename, ingested_at, chunk_count, chunk_size, overlap, section_count " +
-                  "FROM documents ORDER BY ingested_at DESC";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            if (projectId != null) ps.setString(1, projectId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) result.add(toSummary(rs));
-            }
-        } catch (SQLException e) {
+                ? "SELECT " + SUMMARY_COLUMNS + " FROM documents WHERE project_id = ? ORDER BY ingested_at DESC"
+                : "SELECT " + SUMMARY_COLUMNS + " FROM documents ORDER BY ingested_at DESC";
+        try {
+            return pool.read(c -> {
+                List<DocumentSummary> result = new ArrayList<>();
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    if (projectId != null) ps.setString(1, projectId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) result.add(toSummary(rs));
+                    }
+                }
+                return result;
+            });
+        } catch (SQLException | IOException e) {
             throw new RuntimeException("Errore lettura registry (summary)", e);
         }
-        return result;
     }
 
     /**
-     * Rimuove il documento dal registry e restituisce i chunk IDs da cancellare
-     * nell'embedding store. Ritorna {@link Optional#empty()} se il documento non esiste.
+     * Pagina di documenti in ordine {@code (ingested_at, document_id)} decrescente, a partire
+     * dalla posizione indicata dal cursore (keyset pagination: il costo non dipende dalla
+     * profondità della pagina).
+     *
+     * @param projectId filtro di progetto, null per tutti
+     * @param cursor    valore {@code nextCursor} della pagina precedente, null per la prima
+     * @throws IllegalArgumentException se il cursore non è valido
      */
-    public synchronized Optional<List<String>> remove(String documentId) {
-        List<String> chunkIds;
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT chunk_ids FROM documents WHERE document_id = ?")) {
-            ps.setString(1, documentId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) return Optional.empty();
-                chunkIds = objectMapper.readValue(rs.getString("chunk_ids"),
-                        new com.fasterxml.jackson.core.type.TypeReference<List<String>>() {});
+    public DocumentPage findPage(String projectId, String cursor, int pageSize) {
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+        StringBuilder sql = new StringBuilder("SELECT " + SUMMARY_COLUMNS + " FROM documents WHERE TRUE");
+        if (projectId != null) sql.append(" AND project_id = ?");
+        if (after != null) sql.append(" AND (ingested_at < ? OR (ingested_at = ? AND document_id < ?))");
+        sql.append(" ORDER BY ingested_at DESC, document_id DESC LIMIT ?");
+        try {
+            return pool.read(c -> {
+                List<DocumentSummary> items = new ArrayList<>(pageSize);
+                boolean more = false;
+                try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                    int i = 1;
+                    if (projectId != null) ps.setString(i++, projectId);
+                    if (after != null) {
+                        ps.setTimestamp(i++, Timestamp.valueOf(after.ingestedAt()));
+                        ps.setTimestamp(i++, Timestamp.valueOf(after.ingestedAt()));
+                        ps.setString(i++, after.documentId());
+                    }
+                    ps.setInt(i, pageSize + 1); // una riga in più per sapere se esiste la pagina successiva
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            if (items.size() == pageSize) { more = true; break; }
+                            items.add(toSummary(rs));
+                        }
+                    }
+                }
+                String next = null;
+                if (more) {
+                    DocumentSummary last = items.get(items.size() - 1);
+                    next = new PageCursor(last.ingestedAt(), last.documentId()).encode();
+                }
+                return new DocumentPage(items, next);
+            });
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Errore lettura registry (pagina)", e);
+        }
+    }
+
+    /** Destinatario delle righe di {@link #forEachSummary}. */
+    @FunctionalInterface
+    public interface SummaryConsumer {
+        void accept(DocumentSummary summary) throws IOException;
+    }
+
+    /**
+     * Passa a {@code consumer} i documenti (in ordine di ingestione decrescente) senza
+     * accumularli in una lista. La scansione procede a pagine di {@value #STREAM_PAGE_SIZE}
+     * righe con lo stesso cursore di {@link #findPage}: la connessione di lettura è occupata solo
+     * per la query di ogni pagina, non mentre il consumer scrive verso un client lento.
+     * I documenti registrati durante la scansione con posizione già superata non compaiono.
+     *
+     * @throws IOException se il consumer fallisce (es. client disconnesso)
+     */
+    public void forEachSummary(String projectId, SummaryConsumer consumer) throws IOException {
+        String cursor = null;
+        do {
+            DocumentPage page = findPage(projectId, cursor, STREAM_PAGE_SIZE);
+            for (DocumentSummary summary : page.items()) consumer.accept(summary);
+            cursor = page.nextCursor();
+        } while (cursor != null);
+    }
+
+    /** Posizione di una pagina: ultima coppia (ingested_at, document_id) restituita. */
+    record PageCursor(LocalDateTime ingestedAt, String documentId) {
+
+        String encode() {
+            String raw = ingestedAt + "|" + documentId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static PageCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                if (sep < 0) throw new IllegalArgumentException("Cursore non valido: " + cursor);
+                return new PageCursor(LocalDateTime.parse(raw.substring(0, sep)), raw.substring(sep + 1));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Cursore non valido: " + cursor, e);
             }
+        }
+    }
+
+    /**
+     * Chunk di un documento indicizzato: IDs nell'embedding store, hash del testo e posizione
+     * (sezione e pagina), nello stesso ordine, con il filename salvato nei metadati dello store.
+     * L'hash è null per i chunk registrati prima della sua introduzione.
+     */
+    public record StoredChunks(String filename, List<String> chunkIds, List<String> chunkHashes,
+                               List<ChunkInfo> chunks) {}
+
+    /** Restituisce IDs, hash e posizione dei chunk del documento. */
+    public Optional<StoredChunks> findChunks(String documentId) {
+        try {
+            return pool.read(c -> {
+                try (PreparedStatement ps = c.prepareStatement("""
+                        SELECT d.filename, c.chunk_id, c.content_hash, c.section_index, c.section_l1, c.section_l2,
+                               c.section_l3, c.section_title, c.section_path, c.section_level, c.page_start,
+                               c.page_end, c.preview
+                        FROM documents d LEFT JOIN chunks c ON c.document_id = d.document_id
+                        WHERE d.document_id = ?
+                        ORDER BY c.ordinal
+                        """)) {
+                    ps.setString(1, documentId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) return Optional.<StoredChunks>empty();
+                        String filename = rs.getString("filename");
+                        List<String> ids = new ArrayList<>();
+                        List<String> hashes = new ArrayList<>();
+                        List<ChunkInfo> chunks = new ArrayList<>();
+                        do {
+                            if (rs.getString("chunk_id") == null) continue; // documento senza chunk
+                            ids.add(rs.getString("chunk_id"));
+                            hashes.add(rs.getString("content_hash"));
+                            chunks.add(toChunkInfo(rs));
+                        } while (rs.next());
+                        return Optional.of(new StoredChunks(filename, ids, hashes, chunks));
+                    }
+                }
+            });
         } catch (SQLException | IOException e) {
-            throw new RuntimeException("Errore lettura chunk_ids dal registry", e);
+            throw new RuntimeException("Errore lettura chunk dal registry", e);
         }
-        try (PreparedStatement ps = conn.prepareStatement(
-                "DELETE FROM documents WHERE document_id = ?")) {
-            ps.setString(1, documentId);
-            ps.executeUpdate();
-        } catch (SQLException e) {
+    }
+
+    /** Documento rimosso dal registry: progetto di appartenenza e chunk da cancellare dallo store. */
+    public record RemovedDocument(String projectId, List<String> chunkIds) {}
+
+    /**
+     * Rimuove il documento e i suoi chunk dal registry e restituisce progetto e chunk IDs da
+     * cancellare nell'embedding store. Ritorna {@link Optional#empty()} se il documento non esiste.
+     */
+    public Optional<RemovedDocument> remove(String documentId) {
+        Optional<Removal> removal;
+        try {
+            // Lettura e cancellazione sulla connessione di scrittura: nessuna register concorrente in mezzo
+            removal = pool.writeInTransaction(c -> {
+                Optional<DocumentSummary> summary = findSummary(c, documentId);
+                if (summary.isEmpty()) return Optional.<Removal>empty();
+                List<String> chunkIds = new ArrayList<>(summary.get().chunkCount());
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT chunk_id FROM chunks WHERE document_id = ? ORDER BY ordinal")) {
+                    ps.setString(1, documentId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) chunkIds.add(rs.getString(1));
+                    }
+                }
+                deleteChunks(c, documentId);
+                try (PreparedStatement ps = c.prepareStatement(
+                        "DELETE FROM documents WHERE document_id = ?")) {
+                    ps.setString(1, documentId);
+                    ps.executeUpdate();
+                }
+                return Optional.of(new Removal(summary.get(), chunkIds));
+            });
+        } catch (SQLException | IOException e) {
             throw new RuntimeException("Errore rimozione documento dal registry", e);
         }
-        return Optional.of(chunkIds);
+        removal.ifPresent(r -> stats.apply(r.summary(), null));
+        return removal.map(r -> new RemovedDocument(r.summary().projectId(), r.chunkIds()));
     }
 
-    public synchronized int totalDocuments() {
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM documents")) {
-            return rs.next() ? rs.getInt(1) : 0;
-        } catch (SQLException e) {
-            throw new RuntimeException("Errore conteggio documenti", e);
+    private record Removal(DocumentSummary summary, List<String> chunkIds) {}
+
+    public int totalDocuments() {
+        return stats.global().documents();
+    }
+
+    public long totalChunks() {
+        return stats.global().chunks();
+    }
+
+    // ── Helper JDBC ─────────────────────────────────────────────────────────────
+
+    private static Optional<DocumentSummary> findSummary(Connection c, String documentId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT " + SUMMARY_COLUMNS + " FROM documents WHERE document_id = ?")) {
+            ps.setString(1, documentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(toSummary(rs)) : Optional.empty();
+            }
         }
     }
 
-    public synchronized int totalChunks() {
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT COALESCE(SUM(chunk_count), 0) FROM documents")) {
-            return rs.next() ? rs.getInt(1) : 0;
-        } catch (SQLException e) {
-            throw new RuntimeException("Errore conteggio chunk", e);
+    private static List<ChunkInfo> findPreviews(Connection c, String documentId, int offset, int limit)
+            throws SQLException {
+        List<ChunkInfo> previews = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement("""
+                SELECT section_index, section_l1, section_l2, section_l3, section_title, section_path,
+                       section_level, page_start, page_end, preview
+                FROM chunks
+                WHERE document_id = ? AND ordinal >= ? AND ordinal < ?
+                ORDER BY ordinal
+                """)) {
+            ps.setString(1, documentId);
+            ps.setInt(2, offset);
+            ps.setLong(3, (long) offset + limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) previews.add(toChunkInfo(rs));
+            }
         }
+        return previews;
     }
 
-    private DocumentRecord toRecord(ResultSet rs) throws SQLException, IOException {
-        return new DocumentRecord(
-                rs.getString("project_id"),
-                rs.getString("document_id"),
-                rs.getString("filename"),
-                rs.getTimestamp("ingested_at").toLocalDateTime(),
-                rs.getInt("chunk_count"),
-                rs.getInt("chunk_size"),
-                rs.getInt("overlap"),
-                rs.getInt("section_count"),
-                objectMapper.readValue(rs.getString("chunk_previews"), CHUNK_LIST_TYPE)
-        );
+    private static ChunkInfo toChunkInfo(ResultSet rs) throws SQLException {
+        return new ChunkInfo(
+                rs.getInt("section_index"),
+                rs.getString("section_l1"),
+                rs.getString("section_l2"),
+                rs.getString("section_l3"),
+                rs.getString("section_title"),
+                rs.getString("section_path"),
+                rs.getInt("section_level"),
+                nullableInt(rs, "page_start"),
+                nullableInt(rs, "page_end"),
+                rs.getString("preview"));
+    }
+
+    private static Integer nullableInt(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
     }
 
-    private DocumentSummary toSummary(ResultSet rs) throws SQLException {
+    private static void deleteChunks(Connection c, String documentId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("DELETE FROM chunks WHERE document_id = ?")) {
+            ps.setString(1, documentId);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Accoda al batch {@code insert} una riga per chunk; {@code hashes} null = impronte non disponibili. */
+    private static void addChunks(PreparedStatement insert, String documentId, List<String> ids,
+                                  List<String> hashes, List<ChunkInfo> previews) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            ChunkInfo info = i < previews.size() ? previews.get(i) : null;
+            insert.setString(1, documentId);
+            insert.setInt(2, i);
+            insert.setString(3, ids.get(i));
+            insert.setString(4, hashes != null ? hashes.get(i) : null);
+            insert.setInt(5, info != null ? info.index() : 0);
+            insert.setString(6, info != null ? info.sectionL1() : null);
+            insert.setString(7, info != null ? info.sectionL2() : null);
+            insert.setString(8, info != null ? info.sectionL3() : null);
+            insert.setString(9, info != null ? info.sectionTitle() : "");
+            insert.setString(10, info != null ? info.sectionPath() : "");
+            insert.setInt(11, info != null ? info.sectionLevel() : 0);
+            insert.setObject(12, info != null ? info.pageStart() : null);
+            insert.setObject(13, info != null ? info.pageEnd() : null);
+            insert.setString(14, info != null ? info.text() : "");
+            insert.addBatch();
+        }
+    }
+
+    private static DocumentSummary toSummary(ResultSet rs) throws SQLException {
         return new DocumentSummary(
                 rs.getString("project_id"),
                 rs.getString("document_id"),
@@ -264,7 +676,9 @@ public class DocumentRegistry {
                 rs.getInt("chunk_count"),
                 rs.getInt("chunk_size"),
                 rs.getInt("overlap"),
-                rs.getInt("section_count")
+                rs.getInt("section_count"),
+                rs.getInt("cached_chunks"),
+                rs.getLong("text_bytes")
         );
     }
 }
@@ -0,0 +1,165 @@
+package it.aw.documentingest.registry;
+
+import it.aw.documentingest.model.ConnectionPoolStats;
+import org.duckdb.DuckDBConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool di connessioni su un database DuckDB: più lettori concorrenti e uno scrittore unico.
+ * <p>
+ * Le connessioni di lettura sono ottenute con {@link DuckDBConnection#duplicate()} dalla
+ * connessione principale e condividono la stessa istanza del database: grazie all'MVCC di
+ * DuckDB ogni lettura vede l'ultimo stato committato senza bloccare le altre. Ogni connessione
+ * è usata da un solo thread alla volta (DuckDBConnection non è thread-safe).
+ * <p>
+ * Le scritture passano tutte dalla connessione principale, serializzate da un lock fair:
+ * le operazioni composte (lettura + modifica) restano atomiche rispetto alle altre scritture.
+ */
+public final class DuckDbConnectionPool implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(DuckDbConnectionPool.class);
+
+    /** Operazione JDBC su una connessione del pool. */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T apply(Connection conn) throws SQLException, IOException;
+    }
+
+    private final Connection writer;
+    private final ReentrantLock writeLock = new ReentrantLock(true);
+    private final List<Connection> readers;
+    private final BlockingQueue<Connection> idleReaders;
+    private final long acquireTimeoutNanos;
+
+    private final AtomicLong readAcquisitions = new AtomicLong();
+    private final AtomicLong readWaitNanos = new AtomicLong();
+    private final AtomicLong readWaitMaxNanos = new AtomicLong();
+    private final AtomicLong writeAcquisitions = new AtomicLong();
+    private final AtomicLong writeWaitNanos = new AtomicLong();
+    private final AtomicLong writeWaitMaxNanos = new AtomicLong();
+
+    /**
+     * @param primary        connessione principale, usata per le scritture e come origine dei duplicati
+     * @param readerCount    numero di connessioni di lettura
+     * @param acquireTimeout attesa massima per ottenere una connessione
+     */
+    public DuckDbConnectionPool(Connection primary, int readerCount, Duration acquireTimeout) throws SQLException {
+        this.writer = primary;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        DuckDBConnection duck = primary.unwrap(DuckDBConnection.class);
+        int count = Math.max(1, readerCount);
+        this.readers = new ArrayList<>(count);
+        this.idleReaders = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; i++) {
+            Connection reader = duck.duplicate();
+            readers.add(reader);
+            idleReaders.add(reader);
+        }
+    }
+
+    /** Esegue una lettura su una connessione libera del pool. */
+    public <T> T read(SqlWork<T> work) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Connection conn;
+        try {
+            conn = idleReaders.poll(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrotto in attesa di una connessione di lettura DuckDB", e);
+        }
+        if (conn == null) {
+            throw new SQLException("Timeout in attesa di una connessione di lettura DuckDB");
+        }
+        record(readAcquisitions, readWaitNanos, readWaitMaxNanos, System.nanoTime() - start);
+        try {
+            return work.apply(conn);
+        } finally {
+            idleReaders.add(conn);
+        }
+    }
+
+    /** Esegue una scrittura (o una lettura che deve essere coerente con le scritture) in modo esclusivo. */
+    public <T> T write(SqlWork<T> work) throws SQLException, IOException {
+        long start = System.nanoTime();
+        boolean locked;
+        try {
+            locked = writeLock.tryLock(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrotto in attesa della connessione di scrittura DuckDB", e);
+        }
+        if (!locked) {
+            throw new SQLException("Timeout in attesa della connessione di scrittura DuckDB");
+        }
+        record(writeAcquisitions, writeWaitNanos, writeWaitMaxNanos, System.nanoTime() - start);
+        try {
+            return work.apply(writer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Come {@link #write(SqlWork)}, eseguendo {@code work} in un'unica transazione (rollback su errore). */
+    public <T> T writeInTransaction(SqlWork<T> work) throws SQLException, IOException {
+        return write(conn -> {
+            conn.setAutoCommit(false);
+            try {
+                T result = work.apply(conn);
+                conn.commit();
+                return result;
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    private static void record(AtomicLong count, AtomicLong total, AtomicLong max, long waitedNanos) {
+        count.incrementAndGet();
+        total.addAndGet(waitedNanos);
+        max.accumulateAndGet(waitedNanos, Math::max);
+    }
+
+    public ConnectionPoolStats stats() {
+        return new ConnectionPoolStats(
+                readers.size(),
+                idleReaders.size(),
+                readAcquisitions.get(),
+                TimeUnit.NANOSECONDS.toMillis(readWaitNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(readWaitMaxNanos.get()),
+                writeAcquisitions.get(),
+                TimeUnit.NANOSECONDS.toMillis(writeWaitNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(writeWaitMaxNanos.get()),
+                writeLock.getQueueLength());
+    }
+
+    /** Chiude i duplicati e la connessione principale. */
+    @Override
+    public void close() {
+        for (Connection reader : readers) closeQuietly(reader);
+        closeQuietly(writer);
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            if (conn != null && !conn.isClosed()) conn.close();
+        } catch (SQLException e) {
+            log.warn("Errore chiusura connessione DuckDB: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package it.aw.documentingest.registry;
+
+import dev.langchain4j.data.embedding.Embedding;
+import it.aw.documentingest.model.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache persistente degli embedding dei chunk, indirizzata per contenuto e salvata nella
+ * tabella {@code embedding_cache} dello stesso file DuckDB usato da DocumentRegistry.
+ * <p>
+ * La chiave è lo SHA-256 del testo del chunk insieme all'identificativo del modello
+ * ({@code embedding.model-id}): cambiando modello le voci precedenti vengono ignorate.
+ * Il vettore è salvato come BLOB di float little-endian.
+ * <p>
+ * Le query passano dal {@link DuckDbConnectionPool} di DocumentRegistry: le letture procedono in
+ * parallelo su connessioni duplicate, gli inserimenti usano la connessione principale e il lock di
+ * scrittura comune a registry e cache.
+ * Numero di voci e byte occupati sono contati una sola volta all'avvio e poi aggiornati in
+ * memoria a ogni inserimento: {@link #stats()} non interroga DuckDB.
+ */
+@Component
+public class EmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    private static final String CREATE_TABLE = """
+            CREATE TABLE IF NOT EXISTS embedding_cache (
+                content_hash VARCHAR   NOT NULL,
+                model_id     VARCHAR   NOT NULL,
+                embedding    BLOB      NOT NULL,
+                created_at   TIMESTAMP NOT NULL,
+                PRIMARY KEY (content_hash, model_id)
+            )
+            """;
+
+    /** Numero massimo di hash per singola query IN (...). */
+    private static final int LOOKUP_BATCH = 500;
+
+    @Value("${embedding.model-id:all-minilm-l6-v2-q}")
+    private String modelId;
+
+    @Value("${embedding.cache.enabled:true}")
+    private boolean enabled;
+
+    private final DocumentRegistry registry;
+    private DuckDbConnectionPool pool;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public EmbeddingCache(DocumentRegistry registry) {
+        this.registry = registry;
+    }
+
+    @PostConstruct
+    void init() throws SQLException, IOException {
+        if (!enabled) {
+            log.info("EmbeddingCache: disattivata");
+            return;
+        }
+        pool = registry.pool();
+        pool.write(c -> {
+            try (Statement stmt = c.createStatement()) {
+                stmt.execute(CREATE_TABLE);
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT COUNT(*), COALESCE(SUM(octet_length(embedding)), 0) FROM embedding_cache WHERE model_id = ?")) {
+                ps.setString(1, modelId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        entries.set(rs.getLong(1));
+                        bytes.set(rs.getLong(2));
+                    }
+                }
+            }
+            return null;
+        });
+        log.info("EmbeddingCache: tabella 'embedding_cache' pronta (modello {}, {} voci)", modelId, entries.get());
+    }
+
+    /** Hash del contenuto di un chunk, usato come chiave della cache. */
+    public static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+
+    /**
+     * Restituisce gli embedding già presenti in cache per gli hash richiesti.
+     * Gli hash assenti non compaiono nella mappa risultante.
+     */
+    public Map<String, Embedding> findAll(Collection<String> hashes) {
+        Map<String, Embedding> found = new HashMap<>();
+        if (!enabled || hashes.isEmpty()) return found;
+        List<String> all = new ArrayList<>(hashes);
+        try {
+            pool.read(c -> {
+                for (int from = 0; from < all.size(); from += LOOKUP_BATCH) {
+                    List<String> batch = all.subList(from, Math.min(from + LOOKUP_BATCH, all.size()));
+                    String sql = "SELECT content_hash, embedding FROM embedding_cache WHERE model_id = ? AND content_hash IN ("
+                            + String.join(",", Collections.nCopies(batch.size(), "?")) + ")";
+                    try (PreparedStatement ps = c.prepareStatement(sql)) {
+                        ps.setString(1, modelId);
+                        for (int i = 0; i < batch.size(); i++) ps.setString(i + 2, batch.get(i));
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) found.put(rs.getString(1), decode(rs.getBytes(2)));
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Errore lettura embedding cache", e);
+        }
+        hits.addAndGet(found.size());
+        misses.addAndGet(hashes.size() - found.size());
+        return found;
+    }
+
+    /** Salva gli embedding calcolati; le chiavi già presenti vengono ignorate. */
+    public void putAll(Map<String, Embedding> embeddings) {
+        if (!enabled || embeddings.isEmpty()) return;
+        String sql = "INSERT INTO embedding_cache (content_hash, model_id, embedding, created_at) " +
+                     "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Integer> sizes = new ArrayList<>(embeddings.size());
+        try {
+            int[] counts = pool.writeInTransaction(c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    for (Map.Entry<String, Embedding> e : embeddings.entrySet()) {
+                        byte[] encoded = encode(e.getValue());
+                        sizes.add(encoded.length);
+                        ps.setString(1, e.getKey());
+                        ps.setString(2, modelId);
+                        ps.setBytes(3, encoded);
+                        ps.setTimestamp(4, now);
+                        ps.addBatch();
+                    }
+                    return ps.executeBatch();
+                }
+            });
+            // Le righe già presenti (ON CONFLICT DO NOTHING) hanno conteggio 0;
+            // SUCCESS_NO_INFO viene contato come inserimento
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                    entries.incrementAndGet();
+                    bytes.addAndGet(sizes.get(i));
+                }
+            }
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Errore scrittura embedding cache", e);
+        }
+    }
+
+    /** Contatori in memoria, senza accesso a DuckDB né al pool di connessioni. */
+    public CacheStats stats() {
+        return new CacheStats(hits.get(), misses.get(), 0, (int) Math.min(entries.get(), Integer.MAX_VALUE), bytes.get());
+    }
+
+    private static byte[] encode(Embedding embedding) {
+        float[] vector = embedding.vector();
+        ByteBuffer buf = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buf.asFloatBuffer().put(vector);
+        return buf.array();
+    }
+
+    private static Embedding decode(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return Embedding.from(vector);
+    }
+}
@@ -0,0 +1,96 @@
+package it.aw.documentingest.registry;
+
+import it.aw.documentingest.model.DocumentSummary;
+import it.aw.documentingest.model.ProjectStats;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Statistiche per progetto mantenute in memoria da {@link DocumentRegistry}: ricostruite
+ * all'avvio con una sola query aggregata e poi aggiornate a ogni register/remove, così che
+ * la lettura non tocchi DuckDB.
+ * <p>
+ * Ogni modifica è applicata come differenza (documento rimosso, documento aggiunto): le
+ * differenze sono commutative, quindi l'ordine in cui scritture concorrenti le applicano non
+ * cambia il risultato. Fa eccezione {@code lastIngestAt}, che registra l'ingest più recente e
+ * non arretra quando un documento viene rimosso.
+ */
+final class ProjectStatsIndex {
+
+    private final ConcurrentHashMap<String, ProjectStats> byProject = new ConcurrentHashMap<>();
+    private volatile ProjectStats global = empty(null);
+
+    /** Sostituisce il contenuto con le statistiche calcolate dal database. */
+    synchronized void reset(Collection<ProjectStats> projects) {
+        byProject.clear();
+        ProjectStats total = empty(null);
+        for (ProjectStats p : projects) {
+            byProject.put(p.projectId(), p);
+            total = combine(total, p, 1);
+        }
+        global = total;
+    }
+
+    /**
+     * Applica la sostituzione di un documento.
+     *
+     * @param removed versione eliminata o sostituita, null per un nuovo documento
+     * @param added   versione registrata, null per una rimozione
+     */
+    synchronized void apply(DocumentSummary removed, DocumentSummary added) {
+        if (removed != null) {
+            ProjectStats delta = of(removed);
+            byProject.compute(removed.projectId(), (p, s) -> combine(s != null ? s : empty(p), delta, -1));
+            global = combine(global, delta, -1);
+        }
+        if (added != null) {
+            ProjectStats delta = of(added);
+            byProject.compute(added.projectId(), (p, s) -> combine(s != null ? s : empty(p), delta, 1));
+            global = combine(global, delta, 1);
+        }
+    }
+
+    ProjectStats project(String projectId) {
+        ProjectStats stats = byProject.get(projectId);
+        return stats != null ? stats : empty(projectId);
+    }
+
+    ProjectStats global() {
+        return global;
+    }
+
+    /** Progetti con almeno un documento. */
+    List<ProjectStats> projects() {
+        List<ProjectStats> result = new ArrayList<>();
+        for (ProjectStats s : byProject.values()) {
+            if (s.documents() > 0) result.add(s);
+        }
+        return result;
+    }
+
+    private static ProjectStats of(DocumentSummary d) {
+        return new ProjectStats(d.projectId(), 1, d.chunkCount(), d.textBytes(), d.sectionCount(), d.ingestedAt());
+    }
+
+    private static ProjectStats empty(String projectId) {
+        return new ProjectStats(projectId, 0, 0, 0, 0, null);
+    }
+
+    /** {@code base + sign * delta}; lastIngestAt è il massimo dei due. */
+    private static ProjectStats combine(ProjectStats base, ProjectStats delta, int sign) {
+        LocalDateTime last = base.lastIngestAt();
+        if (delta.lastIngestAt() != null && (last == null || delta.lastIngestAt().isAfter(last))) {
+            last = delta.lastIngestAt();
+        }
+        return new ProjectStats(base.projectId(),
+                base.documents() + sign * delta.documents(),
+                base.chunks() + sign * delta.chunks(),
+                base.textBytes() + sign * delta.textBytes(),
+                base.sections() + sign * delta.sections(),
+                last);
+    }
+}
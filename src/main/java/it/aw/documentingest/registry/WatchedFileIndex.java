@@ -0,0 +1,161 @@
+package it.aw.documentingest.registry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Impronte dei file delle cartelle sorvegliate (tabella {@code watched_files} nello stesso file
+ * DuckDB del registry): per ogni file elaborato, dimensione, data di modifica, SHA-256 del
+ * contenuto, documentId assegnato ed esito dell'ultima ingestione.
+ * <p>
+ * Una scansione confronta dimensione e data di modifica con l'impronta e calcola l'hash solo
+ * quando differiscono; l'ingestione avviene solo se cambia anche l'hash. Anche i contenuti la cui
+ * ingestione è fallita hanno un'impronta ({@code failed}), così non vengono riletti a ogni scansione.
+ * Come la EmbeddingCache usa il {@link DuckDbConnectionPool} di DocumentRegistry: letture su
+ * connessioni duplicate, scritture sotto il lock di scrittura comune.
+ */
+@Component
+public class WatchedFileIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(WatchedFileIndex.class);
+
+    private static final String CREATE_TABLE = """
+            CREATE TABLE IF NOT EXISTS watched_files (
+                path          VARCHAR   PRIMARY KEY,
+                project_id    VARCHAR   NOT NULL,
+                size          BIGINT    NOT NULL,
+                modified_at   BIGINT    NOT NULL,
+                content_hash  VARCHAR   NOT NULL,
+                document_id   VARCHAR   NOT NULL,
+                indexed_at    TIMESTAMP NOT NULL,
+                failed        BOOLEAN   NOT NULL DEFAULT false
+            )
+            """;
+
+    /**
+     * Stato di un file al momento dell'ultima ingestione (modifiedAt in millisecondi epoch).
+     * Con {@code failed} l'ingestione di quel contenuto è fallita: {@code documentId} resta quello
+     * del documento (eventualmente mai creato) a cui il file è associato.
+     */
+    public record Fingerprint(String path, String projectId, long size, long modifiedAt,
+                              String contentHash, String documentId, boolean failed) {}
+
+    private final DocumentRegistry registry;
+    private DuckDbConnectionPool pool;
+
+    public WatchedFileIndex(DocumentRegistry registry) {
+        this.registry = registry;
+    }
+
+    @PostConstruct
+    void init() throws SQLException, IOException {
+        pool = registry.pool();
+        pool.write(c -> {
+            try (Statement stmt = c.createStatement()) {
+                stmt.execute(CREATE_TABLE);
+                stmt.execute("ALTER TABLE watched_files ADD COLUMN IF NOT EXISTS failed BOOLEAN DEFAULT false");
+            }
+            return null;
+        });
+        log.info("WatchedFileIndex: tabella 'watched_files' pronta");
+    }
+
+    /** Impronte di tutti i file sotto {@code root} (percorso assoluto), indicizzate per path. */
+    public Map<String, Fingerprint> findUnder(String root) {
+        try {
+            return pool.read(c -> {
+                Map<String, Fingerprint> found = new HashMap<>();
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT path, project_id, size, modified_at, content_hash, document_id, failed FROM watched_files " +
+                        "WHERE starts_with(path, ?)")) {
+                    ps.setString(1, root);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Fingerprint f = toFingerprint(rs);
+                            found.put(f.path(), f);
+                        }
+                    }
+                }
+                return found;
+            });
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Errore lettura impronte dei file sorvegliati", e);
+        }
+    }
+
+    public Optional<Fingerprint> find(String path) {
+        try {
+            return pool.read(c -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT path, project_id, size, modified_at, content_hash, document_id, failed FROM watched_files " +
+                        "WHERE path = ?")) {
+                    ps.setString(1, path);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? Optional.of(toFingerprint(rs)) : Optional.<Fingerprint>empty();
+                    }
+                }
+            });
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Errore lettura impronta di " + path, e);
+        }
+    }
+
+    public void put(Fingerprint f) {
+        String sql = """
+                INSERT INTO watched_files (path, project_id, size, modified_at, content_hash, document_id, indexed_at, failed)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                ON CONFLICT (path) DO UPDATE SET
+                    project_id   = EXCLUDED.project_id,
+                    size         = EXCLUDED.size,
+                    modified_at  = EXCLUDED.modified_at,
+                    content_hash = EXCLUDED.content_hash,
+                    document_id  = EXCLUDED.document_id,
+                    indexed_at   = EXCLUDED.indexed_at,
+                    failed       = EXCLUDED.failed
+                """;
+        try {
+            pool.write(c -> {
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setString(1, f.path());
+                    ps.setString(2, f.projectId());
+                    ps.setLong(3, f.size());
+                    ps.setLong(4, f.modifiedAt());
+                    ps.setString(5, f.contentHash());
+                    ps.setString(6, f.documentId());
+                    ps.setTimestamp(7, Timestamp.valueOf(LocalDateTime.now()));
+                    ps.setBoolean(8, f.failed());
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Errore salvataggio impronta di " + f.path(), e);
+        }
+    }
+
+    public void remove(String path) {
+        try {
+            pool.write(c -> {
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM watched_files WHERE path = ?")) {
+                    ps.setString(1, path);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Errore rimozione impronta di " + path, e);
+        }
+    }
+
+    private static Fingerprint toFingerprint(ResultSet rs) throws SQLException {
+        return new Fingerprint(rs.getString(1), rs.getString(2), rs.getLong(3), rs.getLong(4),
+                rs.getString(5), rs.getString(6), rs.getBoolean(7));
+    }
+}
@@ -0,0 +1,21 @@
+package it.aw.documentingest.service;
+
+/**
+ * Ingestione non ammessa: memoria stimata o posti esauriti e coda di attesa piena,
+ * oppure attesa oltre {@code ingest.admission.max-wait}. Il controller risponde 429
+ * con l'header Retry-After.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /** Secondi dopo i quali conviene ripetere la richiesta. */
+    public long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
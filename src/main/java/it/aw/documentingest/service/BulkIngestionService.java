@@ -0,0 +1,515 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.BulkFileResult;
+import it.aw.documentingest.model.BulkIngestResult;
+import it.aw.documentingest.model.ChunkingParams;
+import it.aw.documentingest.model.DocumentSummary;
+import it.aw.documentingest.model.BulkFileResult.State;
+import it.aw.documentingest.model.IngestionStage;
+import it.aw.documentingest.service.IngestionService.CachedEmbeddings;
+import it.aw.documentingest.service.IngestionService.PreparedDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Ingestione di molti file in una sola richiesta (upload multiplo o archivio ZIP), per un progetto.
+ * <p>
+ * I file attraversano una pipeline a tre stadi collegati da code limitate, così che parse,
+ * embedding e scritture di file diversi si sovrappongano:
+ * <ol>
+ *   <li>{@code ingest.bulk.parse-workers} thread eseguono parse, section detection, chunking
+ *       e enrichment (fasi [1]-[4] di IngestionService)</li>
+ *   <li>{@code ingest.bulk.embed-workers} thread calcolano gli embedding: le richieste concorrenti
+ *       confluiscono nello stesso BatchingEmbeddingModel usato dalle altre ingestioni</li>
+ *   <li>il thread della richiesta scrive a blocchi di al più {@code ingest.bulk.write-batch}
+ *       documenti: un solo addAll sull'embedding store e una sola transazione sul registry;
+ *       se il blocco fallisce i suoi documenti vengono riscritti uno alla volta</li>
+ * </ol>
+ * A coda piena lo stadio precedente si ferma, quindi la memoria occupata non dipende dal numero
+ * di file. Un errore su un file non interrompe gli altri: l'esito è riportato file per file.
+ * Sono indicizzati solo i file (e gli elementi ZIP) con estensione in {@code ingest.bulk.extensions};
+ * gli altri compaiono negli esiti come SKIPPED.
+ * Le ingestioni bulk contemporanee sono al più {@code ingest.bulk.max-concurrent}; oltre, la
+ * richiesta viene rifiutata con {@link RejectedExecutionException}.
+ * <p>
+ * Il controllo di ammissione è applicato documento per documento: ogni file riserva la propria
+ * memoria stimata prima del parse e la rilascia dopo la scrittura (o il fallimento), in coda FIFO
+ * con le altre ingestioni. Il parse si ferma quando il budget è esaurito, senza che la richiesta
+ * bulk trattenga posti per tutta la sua durata. Prima di copiare gli upload si verifica che la
+ * coda di ammissione non sia già piena (429).
+ */
+@Service
+public class BulkIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIngestionService.class);
+
+    @Value("${ingest.bulk.parse-workers:2}")
+    private int parseWorkers;
+
+    @Value("${ingest.bulk.embed-workers:2}")
+    private int embedWorkers;
+
+    /** Documenti in attesa tra uno stadio e il successivo. */
+    @Value("${ingest.bulk.queue-capacity:8}")
+    private int queueCapacity;
+
+    @Value("${ingest.bulk.write-batch:16}")
+    private int writeBatch;
+
+    /** Numero massimo di file (o elementi ZIP) per richiesta. */
+    @Value("${ingest.bulk.max-files:5000}")
+    private int maxFiles;
+
+    /** Dimensione massima di un documento: elemento estratto da uno ZIP o file caricato direttamente. */
+    @Value("${ingest.bulk.max-entry-size:50MB}")
+    private DataSize maxEntrySize;
+
+    /** Dimensione massima complessiva dei documenti di una richiesta, dopo l'estrazione degli ZIP. */
+    @Value("${ingest.bulk.max-total-size:2GB}")
+    private DataSize maxTotalSize;
+
+    /** Numero massimo di elementi letti da un archivio ZIP, comprese directory e file nascosti. */
+    @Value("${ingest.bulk.max-zip-entries:10000}")
+    private int maxZipEntries;
+
+    /** Estensioni indicizzate (senza punto, minuscole); gli altri file sono esclusi. */
+    @Value("${ingest.bulk.extensions:pdf,txt,md}")
+    private Set<String> extensions;
+
+    @Value("${ingest.bulk.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private final IngestionService ingestionService;
+    private final IngestionMetrics metrics;
+    private final IngestionAdmission admission;
+    private Semaphore slots;
+
+    /** File da indicizzare, già copiato su disco; path null per i file esclusi per estensione. */
+    private record BulkFile(String filename, String contentType, Path path) {
+
+        boolean skipped() {
+            return path == null;
+        }
+    }
+
+    private record Parsed(int position, PreparedDocument doc, IngestionMetrics.Tracker tracker) {}
+
+    private record Embedded(Parsed parsed, CachedEmbeddings embeddings) {}
+
+    /** Permessi di ammissione dei documenti di una richiesta, per posizione; chiusi tutti a fine richiesta. */
+    private static final class Permits {
+        private final Map<Integer, IngestionAdmission.Permit> open = new HashMap<>();
+        private boolean closed;
+
+        /** Restituisce false (e rilascia il permesso) se la richiesta è già terminata. */
+        synchronized boolean add(int position, IngestionAdmission.Permit permit) {
+            if (closed) {
+                permit.close();
+                return false;
+            }
+            open.put(position, permit);
+            return true;
+        }
+
+        synchronized void release(int position) {
+            IngestionAdmission.Permit permit = open.remove(position);
+            if (permit != null) permit.close();
+        }
+
+        synchronized void closeAll() {
+            closed = true;
+            open.values().forEach(IngestionAdmission.Permit::close);
+            open.clear();
+        }
+    }
+
+    /** Byte ancora copiabili su disco per la richiesta, entro {@code ingest.bulk.max-total-size}. */
+    private static final class SpoolBudget {
+        private long remaining;
+
+        SpoolBudget(long remaining) {
+            this.remaining = remaining;
+        }
+    }
+
+    /** Marcatore di fine stream nelle code tra gli stadi. */
+    private static final Parsed END_PARSED = new Parsed(-1, null, null);
+    private static final Embedded END_EMBEDDED = new Embedded(END_PARSED, null);
+
+    public BulkIngestionService(IngestionService ingestionService, IngestionMetrics metrics,
+                                IngestionAdmission admission) {
+        this.ingestionService = ingestionService;
+        this.metrics = metrics;
+        this.admission = admission;
+    }
+
+    @PostConstruct
+    void init() {
+        slots = new Semaphore(Math.max(maxConcurrent, 1));
+        log.info("BulkIngestionService: {} parse worker, {} embed worker, coda {}, blocchi di scrittura da {}",
+                parseWorkers, embedWorkers, queueCapacity, writeBatch);
+    }
+
+    /**
+     * Indicizza tutti i file caricati; gli archivi ZIP vengono espansi nei loro elementi.
+     *
+     * @throws IllegalArgumentException  se i file superano {@code ingest.bulk.max-files}, un file o
+     *                                   elemento ZIP supera {@code ingest.bulk.max-entry-size}, i documenti
+     *                                   insieme superano {@code ingest.bulk.max-total-size} o un archivio
+     *                                   ha più di {@code ingest.bulk.max-zip-entries} elementi
+     * @throws RejectedExecutionException se sono già in corso {@code ingest.bulk.max-concurrent} ingestioni bulk
+     * @throws AdmissionRejectedException se la coda del controllo di ammissione è già piena
+     */
+    public BulkIngestResult ingest(List<MultipartFile> uploads, ChunkingParams params, String projectId)
+            throws IOException, InterruptedException {
+        if (!slots.tryAcquire()) {
+            throw new RejectedExecutionException("Troppe ingestioni bulk in corso");
+        }
+        List<BulkFile> files = new ArrayList<>();
+        try {
+            admission.checkQueue();
+            SpoolBudget budget = new SpoolBudget(maxTotalSize.toBytes());
+            for (MultipartFile upload : uploads) spool(upload, files, budget);
+            return run(files, params, projectId);
+        } finally {
+            files.stream().filter(f -> !f.skipped()).forEach(f -> deleteQuietly(f.path()));
+            slots.release();
+        }
+    }
+
+    private BulkIngestResult run(List<BulkFile> files, ChunkingParams params, String projectId)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        log.info("Inizio ingestione bulk: {} file (projectId={})", files.size(), projectId);
+        BulkFileResult[] results = new BulkFileResult[files.size()];
+        BlockingQueue<Parsed> parsed = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+        BlockingQueue<Embedded> embedded = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+        AtomicInteger nextFile = new AtomicInteger();
+        AtomicInteger activeParsers = new AtomicInteger(Math.max(parseWorkers, 1));
+        AtomicInteger activeEmbedders = new AtomicInteger(Math.max(embedWorkers, 1));
+        Permits permits = new Permits();
+
+        ExecutorService stages = Executors.newFixedThreadPool(
+                activeParsers.get() + activeEmbedders.get(), daemonThreads("bulk-stage-"));
+        try {
+            for (int w = activeParsers.get(); w > 0; w--) {
+                stages.execute(() -> {
+                    try {
+                        for (int i; (i = nextFile.getAndIncrement()) < files.size(); ) {
+                            if (files.get(i).skipped()) {
+                                results[i] = new BulkFileResult(files.get(i).filename(), State.SKIPPED, null,
+                                        "Estensione non ammessa (ammesse: " + extensions + ")");
+                                continue;
+                            }
+                            Parsed p = parse(i, files.get(i), params, projectId, results, permits);
+                            if (p != null) parsed.put(p);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        // L'ultimo parser chiude lo stream: un marcatore per ogni embed worker
+                        if (activeParsers.decrementAndGet() == 0) {
+                            for (int k = 0; k < activeEmbedders.get(); k++) putQuietly(parsed, END_PARSED);
+                        }
+                    }
+                });
+            }
+            for (int w = activeEmbedders.get(); w > 0; w--) {
+                stages.execute(() -> {
+                    try {
+                        for (Parsed p; (p = parsed.take()) != END_PARSED; ) {
+                            Embedded e = embed(p, files, results, permits);
+                            if (e != null) embedded.put(e);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        if (activeEmbedders.decrementAndGet() == 0) putQuietly(embedded, END_EMBEDDED);
+                    }
+                });
+            }
+            write(embedded, files, results, permits);
+        } finally {
+            stages.shutdownNow();
+            permits.closeAll();
+        }
+        // File non arrivati a un esito perché la richiesta è stata interrotta
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = new BulkFileResult(files.get(i).filename(), State.FAILED, null, "Ingestione interrotta");
+            }
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        int completed = 0;
+        int skipped = 0;
+        long chunks = 0;
+        for (BulkFileResult r : results) {
+            if (r.state() == State.COMPLETED) {
+                completed++;
+                chunks += r.document().chunkCount();
+            } else if (r.state() == State.SKIPPED) {
+                skipped++;
+            }
+        }
+        log.info("Ingestione bulk completata: {}/{} file, {} chunk in {} s (projectId={})",
+                completed, files.size(), chunks, String.format(Locale.ROOT, "%.1f", elapsed), projectId);
+        return new BulkIngestResult(projectId, files.size(), completed, files.size() - completed - skipped, skipped,
+                chunks, elapsed, elapsed > 0 ? completed / elapsed : 0, elapsed > 0 ? chunks / elapsed : 0,
+                Arrays.asList(results));
+    }
+
+    /**
+     * Stadio 1: attende l'ammissione del documento, poi lo analizza. Restituisce null (ed esito
+     * FAILED) se il file non può essere analizzato, null senza esito se la richiesta è terminata.
+     */
+    private Parsed parse(int position, BulkFile file, ChunkingParams params, String projectId,
+                         BulkFileResult[] results, Permits permits) throws InterruptedException {
+        String fileType = ingestionService.fileType(file.contentType(), file.filename());
+        IngestionAdmission.Permit permit = admission.admit(admission.estimateCost(file.path().toFile().length(), fileType));
+        if (!permits.add(position, permit)) return null;
+        IngestionMetrics.Tracker tracker = metrics.start("bulk", fileType, projectId, IngestionProgress.NONE);
+        try {
+            PreparedDocument doc = ingestionService.prepareNew(file.filename(), file.contentType(),
+                    new FileSystemResource(file.path()), params, projectId, tracker);
+            return new Parsed(position, doc, tracker);
+        } catch (Exception e) {
+            fail(position, file, tracker, e, results, permits);
+            return null;
+        }
+    }
+
+    /** Stadio 2: restituisce null (ed esito FAILED) se il calcolo degli embedding fallisce. */
+    private Embedded embed(Parsed p, List<BulkFile> files, BulkFileResult[] results, Permits permits) {
+        try {
+            p.tracker().stage(IngestionStage.EMBED);
+            CachedEmbeddings embeddings = ingestionService.embed(p.doc());
+            p.tracker().embedded(p.doc().segments().size());
+            return new Embedded(p, embeddings);
+        } catch (Exception e) {
+            fail(p.position(), files.get(p.position()), p.tracker(), e, results, permits);
+            return null;
+        }
+    }
+
+    /** Stadio 3: scrive a blocchi fino al marcatore di fine. */
+    private void write(BlockingQueue<Embedded> embedded, List<BulkFile> files, BulkFileResult[] results,
+                       Permits permits) throws InterruptedException {
+        List<Embedded> batch = new ArrayList<>(Math.max(writeBatch, 1));
+        boolean done = false;
+        while (!done) {
+            batch.clear();
+            batch.add(embedded.take());
+            embedded.drainTo(batch, Math.max(writeBatch, 1) - 1);
+            if (batch.get(batch.size() - 1) == END_EMBEDDED) {
+                batch.remove(batch.size() - 1);
+                done = true;
+            }
+            if (batch.isEmpty()) continue;
+
+            for (Embedded e : batch) e.parsed().tracker().stage(IngestionStage.STORE);
+            try {
+                store(batch, files, results, permits);
+            } catch (Exception e) {
+                if (batch.size() == 1) {
+                    Parsed p = batch.get(0).parsed();
+                    fail(p.position(), files.get(p.position()), p.tracker(), e, results, permits);
+                    continue;
+                }
+                // Il blocco è stato annullato per intero: si riprova un documento alla volta,
+                // così che un file difettoso non faccia fallire gli altri
+                log.warn("Ingestione bulk: scrittura di un blocco di {} documenti fallita ({}), nuovo tentativo per file",
+                        batch.size(), e.getMessage());
+                for (Embedded single : batch) {
+                    try {
+                        store(List.of(single), files, results, permits);
+                    } catch (Exception retry) {
+                        Parsed p = single.parsed();
+                        fail(p.position(), files.get(p.position()), p.tracker(), retry, results, permits);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Scrive i documenti con un solo storeAll e ne registra l'esito COMPLETED. */
+    private void store(List<Embedded> batch, List<BulkFile> files, BulkFileResult[] results, Permits permits) {
+        List<PreparedDocument> docs = new ArrayList<>(batch.size());
+        List<CachedEmbeddings> embeddings = new ArrayList<>(batch.size());
+        for (Embedded e : batch) {
+            docs.add(e.parsed().doc());
+            embeddings.add(e.embeddings());
+        }
+        List<DocumentSummary> summaries = ingestionService.storeAll(docs, embeddings);
+        for (int i = 0; i < batch.size(); i++) {
+            Parsed p = batch.get(i).parsed();
+            results[p.position()] = new BulkFileResult(
+                    files.get(p.position()).filename(), State.COMPLETED, summaries.get(i), null);
+            p.tracker().finish(true);
+            permits.release(p.position());
+        }
+    }
+
+    private static void fail(int position, BulkFile file, IngestionMetrics.Tracker tracker, Exception e,
+                             BulkFileResult[] results, Permits permits) {
+        log.warn("Ingestione bulk: file {} fallito — {}", file.filename(), e.getMessage());
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        results[position] = new BulkFileResult(file.filename(), State.FAILED, null, error);
+        tracker.finish(false);
+        permits.release(position);
+    }
+
+    // -------------------------------------------------------------------------
+    // Spooling degli upload e degli elementi ZIP
+    // -------------------------------------------------------------------------
+
+    private void spool(MultipartFile upload, List<BulkFile> files, SpoolBudget budget) throws IOException {
+        String filename = upload.getOriginalFilename() != null ? upload.getOriginalFilename() : "unknown";
+        if (isZip(upload.getContentType(), filename)) {
+            try (ZipInputStream zip = new ZipInputStream(upload.getInputStream())) {
+                int entries = 0;
+                for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                    if (++entries > maxZipEntries) {
+                        throw new IllegalArgumentException(
+                                "Troppi elementi nell'archivio " + filename + " (massimo " + maxZipEntries + ")");
+                    }
+                    if (entry.isDirectory() || isHidden(entry.getName())) continue;
+                    checkFileCount(files);
+                    if (!isAllowed(entry.getName())) {
+                        files.add(new BulkFile(entry.getName(), null, null));
+                        continue;
+                    }
+                    Path path = ingestionService.newSpoolFile();
+                    files.add(new BulkFile(entry.getName(), contentTypeOf(entry.getName()), path));
+                    copyLimited(zip, path, entry.getName(), budget);
+                }
+            }
+            return;
+        }
+        checkFileCount(files);
+        if (!isAllowed(filename)) {
+            files.add(new BulkFile(filename, null, null));
+            return;
+        }
+        if (upload.getSize() > maxEntrySize.toBytes()) {
+            throw new IllegalArgumentException("File troppo grande: " + filename + " (massimo " + maxEntrySize + ")");
+        }
+        if (upload.getSize() > budget.remaining) {
+            throw totalSizeExceeded();
+        }
+        budget.remaining -= upload.getSize();
+        Path path = ingestionService.newSpoolFile();
+        files.add(new BulkFile(filename, upload.getContentType(), path));
+        upload.transferTo(path);
+    }
+
+    private void checkFileCount(List<BulkFile> files) {
+        if (files.size() >= maxFiles) {
+            throw new IllegalArgumentException("Troppi file nella richiesta (massimo " + maxFiles + ")");
+        }
+    }
+
+    /**
+     * Copia l'elemento corrente dello ZIP interrompendosi oltre {@code ingest.bulk.max-entry-size}
+     * o quando la richiesta supera {@code ingest.bulk.max-total-size}: conta i byte estratti, non
+     * le dimensioni dichiarate nell'archivio.
+     */
+    private void copyLimited(InputStream in, Path target, String name, SpoolBudget budget) throws IOException {
+        long limit = maxEntrySize.toBytes();
+        long written = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream out = Files.newOutputStream(target)) {
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                written += n;
+                if (written > limit) {
+                    throw new IllegalArgumentException(
+                            "Elemento ZIP troppo grande: " + name + " (massimo " + maxEntrySize + ")");
+                }
+                budget.remaining -= n;
+                if (budget.remaining < 0) throw totalSizeExceeded();
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private IllegalArgumentException totalSizeExceeded() {
+        return new IllegalArgumentException("Documenti troppo grandi nel complesso (massimo " + maxTotalSize + ")");
+    }
+
+    private static boolean isZip(String contentType, String filename) {
+        return "application/zip".equals(contentType)
+                || "application/x-zip-compressed".equals(contentType)
+                || filename.toLowerCase(Locale.ROOT).endsWith(".zip");
+    }
+
+    /** Metadati di sistema negli archivi creati da macOS ed elementi nascosti. */
+    private static boolean isHidden(String entryName) {
+        String base = entryName.substring(entryName.lastIndexOf('/') + 1);
+        return entryName.startsWith("__MACOSX/") || base.startsWith(".");
+    }
+
+    private boolean isAllowed(String name) {
+        String base = name.substring(name.lastIndexOf('/') + 1);
+        int dot = base.lastIndexOf('.');
+        return dot > 0 && extensions.contains(base.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static String contentTypeOf(String entryName) {
+        return entryName.toLowerCase(Locale.ROOT).endsWith(".pdf") ? "application/pdf" : "text/plain";
+    }
+
+    /** Inserisce il marcatore di fine; con il thread interrotto la richiesta è già in chiusura. */
+    private static <T> void putQuietly(BlockingQueue<T> queue, T marker) {
+        try {
+            queue.put(marker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Impossibile cancellare il file temporaneo {}: {}", path, e.getMessage());
+        }
+    }
+}
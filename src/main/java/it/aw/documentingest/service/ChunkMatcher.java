@@ -0,0 +1,89 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.ChunkInfo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Abbinamento dei chunk di una nuova versione di un documento a quelli della versione precedente,
+ * per il re-ingest differenziale.
+ * <p>
+ * I chunk sono confrontati per hash del testo; ogni chunk precedente può essere riusato una sola
+ * volta. Se il testo coincide ma sezione, pagine o filename sono cambiati il chunk è "spostato":
+ * la riga dello store va riscritta con i nuovi metadati, ma l'embedding resta quello del testo.
+ */
+final class ChunkMatcher {
+
+    /**
+     * Esito dell'abbinamento.
+     *
+     * @param chunkIds       ID dello store per posizione: quello riusato, o null per i chunk da aggiungere
+     * @param addedPositions posizioni dei chunk da aggiungere allo store (nuovi o spostati), in ordine
+     * @param removedIds     ID dei chunk precedenti da rimuovere dallo store (scomparsi o spostati)
+     * @param moved          chunk spostati, contati sia in addedPositions sia in removedIds
+     */
+    record Match(List<String> chunkIds, List<Integer> addedPositions, List<String> removedIds, int moved) {}
+
+    private ChunkMatcher() {}
+
+    /**
+     * @param oldIds    ID nello store dei chunk precedenti
+     * @param oldHashes hash del testo dei chunk precedenti (null per quelli registrati senza hash)
+     * @param oldChunks posizione dei chunk precedenti, nello stesso ordine
+     * @param hashes    hash del testo dei nuovi chunk
+     * @param chunks    posizione dei nuovi chunk, nello stesso ordine
+     */
+    static Match match(String oldFilename, List<String> oldIds, List<String> oldHashes, List<ChunkInfo> oldChunks,
+                       String filename, List<String> hashes, List<ChunkInfo> chunks) {
+        boolean sameFilename = Objects.equals(filename, oldFilename);
+        Map<String, Deque<Integer>> reusable = new HashMap<>();
+        for (int j = 0; j < oldIds.size(); j++) {
+            reusable.computeIfAbsent(oldHashes.get(j), h -> new ArrayDeque<>()).add(j);
+        }
+        List<String> chunkIds = new ArrayList<>(Collections.nCopies(hashes.size(), (String) null));
+        List<Integer> addedPositions = new ArrayList<>();
+        List<String> removedIds = new ArrayList<>();
+        int moved = 0;
+        for (int i = 0; i < hashes.size(); i++) {
+            Deque<Integer> candidates = reusable.get(hashes.get(i));
+            Integer j = candidates != null ? candidates.poll() : null;
+            if (j != null && sameFilename && sameLocation(oldChunks.get(j), chunks.get(i))) {
+                chunkIds.set(i, oldIds.get(j));
+                continue;
+            }
+            if (j != null) {
+                removedIds.add(oldIds.get(j));
+                moved++;
+            }
+            addedPositions.add(i);
+        }
+        for (Deque<Integer> left : reusable.values()) {
+            for (int j : left) removedIds.add(oldIds.get(j));
+        }
+        return new Match(chunkIds, addedPositions, removedIds, moved);
+    }
+
+    /**
+     * Stessa posizione nel documento: sezione e pagine, cioè i metadati salvati nello store.
+     * L'indice ordinale nella sezione ({@code chunk.index}) è escluso perché cambierebbe per tutti
+     * i chunk successivi a un'inserzione: per i chunk riusati il valore nello store può riferirsi
+     * alla versione precedente, l'ordine autorevole è quello del registry.
+     */
+    static boolean sameLocation(ChunkInfo a, ChunkInfo b) {
+        return Objects.equals(a.sectionPath(), b.sectionPath())
+                && Objects.equals(a.sectionL1(), b.sectionL1())
+                && Objects.equals(a.sectionL2(), b.sectionL2())
+                && Objects.equals(a.sectionL3(), b.sectionL3())
+                && Objects.equals(a.sectionTitle(), b.sectionTitle())
+                && a.sectionLevel() == b.sectionLevel()
+                && Objects.equals(a.pageStart(), b.pageStart())
+                && Objects.equals(a.pageEnd(), b.pageEnd());
+    }
+}
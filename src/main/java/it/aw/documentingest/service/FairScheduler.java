@@ -0,0 +1,316 @@
+package it.aw.documentingest.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.aw.documentingest.model.ProjectQueueStats;
+import it.aw.documentingest.model.SchedulerStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Scheduler equo tra progetti per il lavoro pesante delle ingestioni: gli embedding, a porzioni
+ * di al più {@code ingest.scheduler.slice-size} testi, e le scritture sull'embedding store.
+ * <p>
+ * Le porzioni vengono eseguite dal thread chiamante, ma al più {@code ingest.scheduler.slots}
+ * alla volta; quelle in attesa sono servite in ordine di weighted fair queueing: ogni porzione
+ * riceve un tempo virtuale di fine {@code max(V, fine precedente del progetto) + costo / peso}
+ * e viene servita per prima quella con il tempo più basso. Un progetto che accoda migliaia di
+ * porzioni avanza quindi al ritmo del proprio peso, senza far attendere gli altri progetti dietro
+ * l'intero arretrato. I pesi si impostano con {@code ingest.scheduler.weights}
+ * (formato {@code projectId=peso;projectId=peso}), gli altri progetti hanno {@code default-weight}.
+ * <p>
+ * La ricerca non passa dalla coda: {@link #search} la esegue subito e, finché almeno una ricerca
+ * è in corso, le nuove porzioni di ingestione sono limitate a {@code slots-during-search}; nel
+ * modello di embedding le query hanno comunque priorità (BatchingEmbeddingModel).
+ * <p>
+ * Un progetto senza porzioni in coda né in esecuzione viene dimenticato (con le sue statistiche)
+ * appena il tempo virtuale supera la sua ultima fine, o quando lo scheduler resta vuoto: al
+ * ritorno riparte da V come un progetto nuovo, senza perdere né guadagnare precedenza.
+ */
+@Component
+public class FairScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(FairScheduler.class);
+
+    @Value("${ingest.scheduler.enabled:true}")
+    private boolean enabled;
+
+    /** Porzioni di ingestione concorrenti (0 = automatico: un quarto dei core, almeno 2). */
+    @Value("${ingest.scheduler.slots:0}")
+    private int slots;
+
+    @Value("${ingest.scheduler.slots-during-search:1}")
+    private int slotsDuringSearch;
+
+    @Value("${ingest.scheduler.slice-size:64}")
+    private int sliceSize;
+
+    @Value("${ingest.scheduler.default-weight:1}")
+    private double defaultWeight;
+
+    @Value("${ingest.scheduler.weights:}")
+    private String weightsConfig;
+
+    @Value("${ingest.metrics.project-tag:false}")
+    private boolean projectTag;
+
+    private final MeterRegistry registry;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition granted = lock.newCondition();
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparingDouble((Ticket t) -> t.finishTag).thenComparingLong(t -> t.seq));
+    private final Map<String, ProjectQueue> projects = new ConcurrentHashMap<>();
+    private final Map<String, Double> weights = new HashMap<>();
+    private final AtomicInteger activeSearches = new AtomicInteger();
+    private double virtualTime;
+    private long seq;
+    private int running;
+
+    /** Stato di un progetto; campi modificati solo con il lock acquisito. */
+    private static final class ProjectQueue {
+        final String projectId;
+        final double weight;
+        final Timer waitTimer;
+        Gauge queuedGauge;   // solo con ingest.metrics.project-tag=true
+        double lastFinish;
+        volatile int queued;
+        int running;
+        long slices;
+        long waitTotalNanos;
+        long waitMaxNanos;
+
+        ProjectQueue(String projectId, double weight, Timer waitTimer) {
+            this.projectId = projectId;
+            this.weight = weight;
+            this.waitTimer = waitTimer;
+        }
+    }
+
+    /** Porzione in attesa o in esecuzione. */
+    private static final class Ticket {
+        final ProjectQueue project;
+        final double startTag;
+        final double finishTag;
+        final long seq;
+        final long enqueuedAt = System.nanoTime();
+        boolean granted;
+
+        Ticket(ProjectQueue project, double startTag, double finishTag, long seq) {
+            this.project = project;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.seq = seq;
+        }
+    }
+
+    public FairScheduler(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @PostConstruct
+    void init() {
+        for (String mapping : weightsConfig.split(";")) {
+            if (mapping.isBlank()) continue;
+            int eq = mapping.indexOf('=');
+            double weight;
+            try {
+                weight = eq > 0 ? Double.parseDouble(mapping.substring(eq + 1).trim()) : -1;
+            } catch (NumberFormatException e) {
+                weight = -1;
+            }
+            if (weight <= 0) {
+                throw new IllegalArgumentException("ingest.scheduler.weights: voce non valida '" + mapping
+                        + "' (atteso projectId=peso, con peso > 0)");
+            }
+            weights.put(mapping.substring(0, eq).trim(), weight);
+        }
+        if (defaultWeight <= 0) {
+            throw new IllegalArgumentException("ingest.scheduler.default-weight deve essere > 0");
+        }
+        if (slots <= 0) slots = Math.max(2, Runtime.getRuntime().availableProcessors() / 4);
+        slotsDuringSearch = Math.max(1, Math.min(slotsDuringSearch, slots));
+        sliceSize = Math.max(sliceSize, 1);
+        if (!projectTag) {
+            Gauge.builder("ingest.scheduler.queued", this, s -> s.projects.values().stream().mapToInt(p -> p.queued).sum())
+                    .tag("project", "all")
+                    .register(registry);
+        }
+        if (enabled) {
+            log.info("Scheduler ingestioni: {} porzioni concorrenti ({} durante le ricerche), porzioni da {} testi, pesi {}",
+                    slots, slotsDuringSearch, sliceSize, weights.isEmpty() ? "uniformi" : weights);
+        }
+    }
+
+    /** Testi massimi per porzione di embedding. */
+    public int sliceSize() {
+        return sliceSize;
+    }
+
+    /**
+     * Esegue una porzione di lavoro di ingestione del progetto quando lo scheduler le assegna un posto.
+     *
+     * @param cost peso della porzione nel calcolo dell'equità (es. numero di testi o di chunk)
+     * @throws SchedulerInterruptedException se il thread viene interrotto prima di ottenere il posto
+     */
+    public <T> T run(String projectId, int cost, Supplier<T> work) {
+        if (!enabled) return work.get();
+        Ticket ticket = acquire(projectId, Math.max(cost, 1));
+        try {
+            return work.get();
+        } finally {
+            release(ticket);
+        }
+    }
+
+    /** Esegue una ricerca senza coda, limitando nel frattempo le nuove porzioni di ingestione. */
+    public <T> T search(Supplier<T> work) {
+        if (!enabled) return work.get();
+        activeSearches.incrementAndGet();
+        try {
+            return work.get();
+        } finally {
+            if (activeSearches.decrementAndGet() == 0 && slotsDuringSearch < slots) {
+                lock.lock();
+                try {
+                    dispatch();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    public SchedulerStats stats() {
+        lock.lock();
+        try {
+            List<ProjectQueueStats> list = new ArrayList<>(projects.size());
+            for (ProjectQueue p : projects.values()) {
+                list.add(new ProjectQueueStats(p.projectId, p.weight, p.queued, p.running, p.slices,
+                        TimeUnit.NANOSECONDS.toMillis(p.waitTotalNanos), TimeUnit.NANOSECONDS.toMillis(p.waitMaxNanos)));
+            }
+            list.sort(Comparator.comparingInt(ProjectQueueStats::queued).reversed()
+                    .thenComparing(ProjectQueueStats::projectId));
+            return new SchedulerStats(slots, slotsDuringSearch, running, activeSearches.get(), list);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Ticket acquire(String projectId, int cost) {
+        lock.lock();
+        try {
+            ProjectQueue project = projects.computeIfAbsent(projectId, this::newProject);
+            double start = Math.max(virtualTime, project.lastFinish);
+            Ticket ticket = new Ticket(project, start, start + cost / project.weight, seq++);
+            project.lastFinish = ticket.finishTag;
+            project.queued++;
+            queue.add(ticket);
+            dispatch();
+            try {
+                while (!ticket.granted) granted.await();
+            } catch (InterruptedException e) {
+                if (!ticket.granted) {
+                    queue.remove(ticket);
+                    project.queued--;
+                    retireIdle(project);
+                    Thread.currentThread().interrupt();
+                    throw new SchedulerInterruptedException(
+                            "Interrotto in attesa dello scheduler (projectId=" + projectId + ")");
+                }
+                Thread.currentThread().interrupt();   // posto già assegnato: si esegue comunque
+            }
+            long waited = System.nanoTime() - ticket.enqueuedAt;
+            project.waitTotalNanos += waited;
+            project.waitMaxNanos = Math.max(project.waitMaxNanos, waited);
+            project.waitTimer.record(waited, TimeUnit.NANOSECONDS);
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Ticket ticket) {
+        lock.lock();
+        try {
+            running--;
+            ticket.project.running--;
+            dispatch();
+            if (running == 0 && queue.isEmpty()) {
+                for (Iterator<ProjectQueue> it = projects.values().iterator(); it.hasNext(); ) {
+                    ProjectQueue p = it.next();
+                    if (p.queued == 0 && p.running == 0) {
+                        it.remove();
+                        removeGauge(p);
+                    }
+                }
+            } else {
+                retireIdle(ticket.project);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rimuove il progetto se non ha porzioni in coda né in esecuzione e la sua ultima fine è già
+     * stata raggiunta dal tempo virtuale. Con il lock acquisito.
+     */
+    private void retireIdle(ProjectQueue project) {
+        if (project.queued > 0 || project.running > 0 || project.lastFinish > virtualTime) return;
+        if (projects.remove(project.projectId, project)) removeGauge(project);
+    }
+
+    private void removeGauge(ProjectQueue project) {
+        if (project.queuedGauge != null) registry.remove(project.queuedGauge);
+    }
+
+    /** Assegna i posti liberi alle porzioni con il tempo di fine più basso. Con il lock acquisito. */
+    private void dispatch() {
+        int limit = activeSearches.get() > 0 ? slotsDuringSearch : slots;
+        boolean any = false;
+        while (running < limit && !queue.isEmpty()) {
+            Ticket next = queue.poll();
+            next.granted = true;
+            next.project.queued--;
+            next.project.running++;
+            next.project.slices++;
+            virtualTime = Math.max(virtualTime, next.startTag);
+            running++;
+            any = true;
+        }
+        if (any) granted.signalAll();
+    }
+
+    private ProjectQueue newProject(String projectId) {
+        String tag = projectTag ? projectId : "all";
+        Timer waitTimer = Timer.builder("ingest.scheduler.wait")
+                .tag("project", tag)
+                .publishPercentileHistogram(!projectTag)   // istogramma solo senza tag per progetto
+                .register(registry);
+        ProjectQueue project = new ProjectQueue(projectId, weights.getOrDefault(projectId, defaultWeight), waitTimer);
+        if (projectTag) {
+            project.queuedGauge = Gauge.builder("ingest.scheduler.queued", project, p -> p.queued)
+                    .tag("project", projectId)
+                    .register(registry);
+        }
+        return project;
+    }
+}
@@ -0,0 +1,25 @@
+package it.aw.documentingest.service;
+
+/**
+ * Famiglia di heading riconosciuta da {@link HeadingScanner}.
+ * <p>
+ * Lo scanner interroga un profilo solo per le righe il cui primo carattere non-spazio
+ * compare in {@link #leadingChars()}: aggiungere profili non aumenta il costo delle righe
+ * che non possono essere heading. Le implementazioni lavorano direttamente sugli indici
+ * del testo e non devono allocare.
+ */
+public interface HeadingProfile {
+
+    /** Caratteri con cui può iniziare un heading del profilo (dopo gli spazi iniziali). */
+    String leadingChars();
+
+    /**
+     * Verifica se la riga è un heading del profilo.
+     *
+     * @param text  testo completo del documento
+     * @param start posizione del primo carattere non-spazio della riga
+     * @param end   fine della riga (esclusiva, posizione del '\n' o fine del testo)
+     * @return livello dell'heading (1-3), oppure 0 se la riga non è un heading
+     */
+    int level(String text, int start, int end);
+}
@@ -0,0 +1,132 @@
+package it.aw.documentingest.service;
+
+/**
+ * Profili di heading predefiniti.
+ * <p>
+ * Ogni profilo riconosce esattamente le righe accettate dai pattern storici di
+ * {@link SectionDetector} (con {@code Matcher.matches()} sull'intera riga):
+ * <ul>
+ *   <li>{@link #ITALIAN_LEGAL}: {@code \s*(Capitolo)\s+\d+.*} (1),
+ *       {@code \s*(Art\.|Articolo|Sezione)\s+\d+.*} (2), {@code \s*(Comma|c\.)\s+\d+.*} (3),
+ *       con keyword case-insensitive solo ASCII</li>
+ *   <li>{@link #NUMBERED}: {@code \s*\d+\.\s+[A-ZÀÈÉÌÒÙ].*} (1),
+ *       {@code \s*\d+\.\d+\s+[A-ZÀÈÉÌÒÙ].*} (2), {@code \s*\d+\.\d+\.\d+\s+[A-ZÀÈÉÌÒÙ].*} (3)</li>
+ * </ul>
+ * Come per le regex, {@code \s} vale {@code [ \t\n\x0B\f\r]} e la coda {@code .*} non può
+ * contenere terminatori di riga ({@code \r}, U+0085, U+2028, U+2029).
+ */
+public final class HeadingProfiles {
+
+    private HeadingProfiles() {}
+
+    /** Keyword dei documenti normativi italiani: Capitolo, Articolo/Art., Sezione, Comma/c. */
+    public static final HeadingProfile ITALIAN_LEGAL = new HeadingProfile() {
+
+        @Override
+        public String leadingChars() {
+            return "CcAaSs";
+        }
+
+        @Override
+        public int level(String text, int start, int end) {
+            if (keyword(text, start, end, "capitolo")) return 1;
+            if (keyword(text, start, end, "articolo")
+                    || keyword(text, start, end, "art.")
+                    || keyword(text, start, end, "sezione")) return 2;
+            if (keyword(text, start, end, "comma")
+                    || keyword(text, start, end, "c.")) return 3;
+            return 0;
+        }
+
+        /** keyword, almeno uno spazio, una cifra e il resto della riga. */
+        private boolean keyword(String text, int start, int end, String keyword) {
+            int p = startsWithIgnoreAsciiCase(text, start, end, keyword);
+            if (p < 0 || p >= end || !isSpace(text.charAt(p))) return false;
+            p = skipSpaces(text, p, end);
+            return p < end && isDigit(text.charAt(p)) && isPlainTail(text, p + 1, end);
+        }
+    };
+
+    /** Numerazioni da manuale tecnico: "1. Titolo", "1.2 Titolo", "1.2.3 Titolo". */
+    public static final HeadingProfile NUMBERED = new HeadingProfile() {
+
+        @Override
+        public String leadingChars() {
+            return "0123456789";
+        }
+
+        @Override
+        public int level(String text, int start, int end) {
+            int p = skipDigits(text, start, end);
+            if (p == start || p >= end || text.charAt(p) != '.') return 0;
+            p++;
+            if (p < end && isSpace(text.charAt(p))) return titled(text, p, end) ? 1 : 0;
+
+            int q = skipDigits(text, p, end);
+            if (q == p || q >= end) return 0;
+            if (isSpace(text.charAt(q))) return titled(text, q, end) ? 2 : 0;
+            if (text.charAt(q) != '.') return 0;
+
+            int r = skipDigits(text, q + 1, end);
+            if (r == q + 1 || r >= end || !isSpace(text.charAt(r))) return 0;
+            return titled(text, r, end) ? 3 : 0;
+        }
+
+        /** Spazi da {@code p}, poi una maiuscola e il resto della riga. */
+        private boolean titled(String text, int p, int end) {
+            p = skipSpaces(text, p, end);
+            return p < end && isUpperInitial(text.charAt(p)) && isPlainTail(text, p + 1, end);
+        }
+    };
+
+    // ── Primitive condivise dai profili ──────────────────────────────────────────
+
+    /** Equivalente di {@code \s} nelle regex Java senza UNICODE_CHARACTER_CLASS. */
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    static int skipSpaces(String text, int p, int end) {
+        while (p < end && isSpace(text.charAt(p))) p++;
+        return p;
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static int skipDigits(String text, int p, int end) {
+        while (p < end && isDigit(text.charAt(p))) p++;
+        return p;
+    }
+
+    static boolean isUpperInitial(char c) {
+        return (c >= 'A' && c <= 'Z') || c == 'À' || c == 'È' || c == 'É' || c == 'Ì' || c == 'Ò' || c == 'Ù';
+    }
+
+    /** True se {@code [p, end)} è accettato da {@code .*}, cioè non contiene terminatori di riga. */
+    static boolean isPlainTail(String text, int p, int end) {
+        for (; p < end; p++) {
+            char c = text.charAt(p);
+            if (c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Confronta {@code keyword} (minuscola) con il testo da {@code p}, ignorando il case
+     * solo per le lettere ASCII come CASE_INSENSITIVE senza UNICODE_CASE.
+     *
+     * @return posizione successiva alla keyword, oppure -1
+     */
+    static int startsWithIgnoreAsciiCase(String text, int p, int end, String keyword) {
+        int n = keyword.length();
+        if (end - p < n) return -1;
+        for (int i = 0; i < n; i++) {
+            char k = keyword.charAt(i);
+            char c = text.charAt(p + i);
+            if (c != k && !(k >= 'a' && k <= 'z' && c == (char) (k - 32))) return -1;
+        }
+        return p + n;
+    }
+}
@@ -0,0 +1,89 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.service.SectionDetector.SectionBoundary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Motore di rilevamento degli heading in un'unica passata sul testo.
+ * <p>
+ * Le righe non vengono estratte come sottostringhe: per ogni riga lo scanner salta gli spazi
+ * iniziali e usa il primo carattere per selezionare, da una tabella precalcolata, i soli
+ * {@link HeadingProfile} che possono riconoscerla. Le righe che non iniziano con un carattere
+ * di attivazione costano la ricerca del '\n' e poco altro; si alloca solo il titolo degli
+ * heading effettivi. Se più profili riconoscono la stessa riga vince il livello più alto.
+ */
+public final class HeadingScanner {
+
+    private static final HeadingProfile[] NONE = new HeadingProfile[0];
+
+    /** Profili candidati per primo carattere ASCII. */
+    private final HeadingProfile[][] asciiDispatch = new HeadingProfile[128][];
+    /** Profili candidati per primo carattere non ASCII. */
+    private final Map<Character, HeadingProfile[]> otherDispatch = new HashMap<>();
+
+    public HeadingScanner(List<HeadingProfile> profiles) {
+        Arrays.fill(asciiDispatch, NONE);
+        for (HeadingProfile profile : profiles) {
+            String chars = profile.leadingChars();
+            for (int i = 0; i < chars.length(); i++) {
+                char c = chars.charAt(i);
+                HeadingProfile[] current = c < 128 ? asciiDispatch[c] : otherDispatch.getOrDefault(c, NONE);
+                if (Arrays.asList(current).contains(profile)) continue;
+                HeadingProfile[] extended = Arrays.copyOf(current, current.length + 1);
+                extended[current.length] = profile;
+                if (c < 128) asciiDispatch[c] = extended;
+                else otherDispatch.put(c, extended);
+            }
+        }
+    }
+
+    public static HeadingScanner of(HeadingProfile... profiles) {
+        return new HeadingScanner(List.of(profiles));
+    }
+
+    /**
+     * Restituisce gli heading del testo in ordine di offset crescente. L'offset è quello del
+     * primo carattere della riga, il titolo è la riga senza spazi iniziali e finali.
+     */
+    public List<SectionBoundary> scan(String text) {
+        List<SectionBoundary> boundaries = new ArrayList<>();
+        int n = text.length();
+        int lineStart = 0;
+        while (lineStart <= n) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = n;
+
+            int p = HeadingProfiles.skipSpaces(text, lineStart, lineEnd);
+            if (p < lineEnd) {
+                int level = levelOf(text, p, lineEnd);
+                if (level > 0) {
+                    boundaries.add(new SectionBoundary(lineStart, level, trimmed(text, lineStart, lineEnd)));
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return boundaries;
+    }
+
+    private int levelOf(String text, int start, int end) {
+        char c = text.charAt(start);
+        HeadingProfile[] candidates = c < 128 ? asciiDispatch[c] : otherDispatch.getOrDefault(c, NONE);
+        int best = 0;
+        for (HeadingProfile profile : candidates) {
+            best = Math.max(best, profile.level(text, start, end));
+        }
+        return best;
+    }
+
+    /** Come {@code text.substring(from, to).trim()}, con una sola allocazione. */
+    private static String trimmed(String text, int from, int to) {
+        while (from < to && text.charAt(from) <= ' ') from++;
+        while (to > from && text.charAt(to - 1) <= ' ') to--;
+        return text.substring(from, to);
+    }
+}
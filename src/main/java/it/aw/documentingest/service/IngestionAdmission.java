@@ -0,0 +1,246 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.AdmissionStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Controllo di ammissione delle ingestioni, per evitare che una raffica di upload esaurisca
+ * l'heap (e con esso la ricerca).
+ * <p>
+ * Ogni ingestione riserva, fino alla sua conclusione, un costo di memoria stimato da dimensione
+ * e tipo del file: testo completo, segmenti, embedding e anteprime restano in heap
+ * contemporaneamente, quindi il costo è proporzionale al file ({@code text-factor} per i testi;
+ * {@code pdf-factor} più il budget dei buffer PDFBox per i PDF, il cui testo è una frazione del file).
+ * Un'ingestione viene ammessa se rientra nel budget di memoria e nel numero massimo di ingestioni
+ * concorrenti; altrimenti attende in una coda FIFO. Un file che da solo supera il budget viene
+ * ammesso quando nessun'altra ingestione è in corso.
+ * <p>
+ * Le richieste HTTP sincrone usano {@link #tryAdmit}: coda limitata ad {@code max-queued} richieste
+ * e attesa massima {@code max-wait}, oltre le quali {@link AdmissionRejectedException} (429).
+ * Job asincroni, cartelle sorvegliate e i singoli documenti delle ingestioni bulk, già limitati
+ * dai propri pool, usano {@link #admit} e attendono senza limite; una richiesta bulk verifica
+ * con {@link #checkQueue} che la coda non sia piena prima di copiare gli upload.
+ * La ricerca non passa da qui.
+ */
+@Component
+public class IngestionAdmission {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionAdmission.class);
+
+    /** Stima del tempo di un'ingestione prima che ne sia conclusa almeno una. */
+    private static final double DEFAULT_HOLD_SECONDS = 5;
+    private static final long MAX_RETRY_AFTER_SECONDS = 300;
+
+    @Value("${ingest.admission.enabled:true}")
+    private boolean enabled;
+
+    /** Memoria stimata complessiva per le ingestioni in corso (0B = 40% dell'heap massimo). */
+    @Value("${ingest.admission.memory-budget:0B}")
+    private DataSize memoryBudget;
+
+    /** Ingestioni concorrenti (0 = numero di core). */
+    @Value("${ingest.admission.max-concurrent:0}")
+    private int maxConcurrent;
+
+    @Value("${ingest.admission.max-queued:16}")
+    private int maxQueued;
+
+    @Value("${ingest.admission.max-wait:30s}")
+    private Duration maxWait;
+
+    @Value("${ingest.admission.text-factor:12}")
+    private double textFactor;
+
+    @Value("${ingest.admission.pdf-factor:3}")
+    private double pdfFactor;
+
+    @Value("${ingest.spool.enabled:true}")
+    private boolean spoolEnabled;
+
+    @Value("${ingest.memory.pdf-heap-budget:32MB}")
+    private DataSize pdfHeapBudget;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Deque<Waiter> waiting = new ArrayDeque<>();
+    private long budgetBytes;
+    private long reservedBytes;
+    private int inFlight;
+    private long admitted;
+    private long rejected;
+    private double avgHoldSeconds = DEFAULT_HOLD_SECONDS;
+
+    /** Ingestione in attesa; {@code cost} già limitato al budget. */
+    private record Waiter(long cost) {}
+
+    /** Posto e memoria riservati da un'ingestione ammessa; va chiuso a ingestione terminata. */
+    public final class Permit implements AutoCloseable {
+
+        private final long cost;
+        private final long admittedAt = System.nanoTime();
+        private boolean closed;
+
+        private Permit(long cost) {
+            this.cost = cost;
+        }
+
+        @Override
+        public void close() {
+            if (cost < 0) return;   // controllo disattivato
+            lock.lock();
+            try {
+                if (closed) return;
+                closed = true;
+                reservedBytes -= cost;
+                inFlight--;
+                double held = (System.nanoTime() - admittedAt) / 1e9;
+                avgHoldSeconds = 0.8 * avgHoldSeconds + 0.2 * held;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        budgetBytes = memoryBudget.toBytes() > 0
+                ? memoryBudget.toBytes()
+                : (long) (Runtime.getRuntime().maxMemory() * 0.4);
+        if (maxConcurrent <= 0) maxConcurrent = Runtime.getRuntime().availableProcessors();
+        if (enabled) {
+            log.info("Ammissione ingestioni: budget {} MB, {} concorrenti, coda {} (attesa max {}s)",
+                    budgetBytes / (1024 * 1024), maxConcurrent, maxQueued, maxWait.toSeconds());
+        }
+    }
+
+    /**
+     * Costo di memoria stimato per l'ingestione di un file.
+     *
+     * @param fileType "pdf" o "text" (vedi {@link IngestionService#fileType})
+     */
+    public long estimateCost(long sizeBytes, String fileType) {
+        long size = Math.max(sizeBytes, 0);
+        if ("pdf".equals(fileType)) {
+            return (long) (size * pdfFactor) + (spoolEnabled ? pdfHeapBudget.toBytes() : size);
+        }
+        return (long) (size * textFactor);
+    }
+
+    /**
+     * Ammissione per le richieste sincrone: attende al più {@code max-wait} in una coda di
+     * {@code max-queued} richieste.
+     *
+     * @throws AdmissionRejectedException se la coda è piena o l'attesa scade
+     */
+    public Permit tryAdmit(long cost) throws InterruptedException {
+        return acquire(cost, true);
+    }
+
+    /** Ammissione per il lavoro in background: attende senza limite di tempo né di coda. */
+    public Permit admit(long cost) throws InterruptedException {
+        return acquire(cost, false);
+    }
+
+    /**
+     * Verifica anticipata per le richieste che ammettono i propri documenti più tardi (bulk).
+     *
+     * @throws AdmissionRejectedException se la coda di attesa è già piena
+     */
+    public void checkQueue() {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            if (waiting.size() >= maxQueued) {
+                throw reject("coda di ammissione piena (" + waiting.size() + " in attesa)");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public AdmissionStats stats() {
+        lock.lock();
+        try {
+            return new AdmissionStats(budgetBytes, reservedBytes, maxConcurrent, inFlight, waiting.size(),
+                    admitted, rejected);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit acquire(long requested, boolean bounded) throws InterruptedException {
+        if (!enabled) return new Permit(-1);
+        long cost = Math.min(Math.max(requested, 0), budgetBytes);
+        lock.lock();
+        try {
+            if (waiting.isEmpty() && fits(cost)) {
+                return grant(cost);
+            }
+            if (bounded && waiting.size() >= maxQueued) {
+                throw reject("coda di ammissione piena (" + waiting.size() + " in attesa)");
+            }
+            Waiter waiter = new Waiter(cost);
+            waiting.addLast(waiter);
+            long remaining = maxWait.toNanos();
+            try {
+                while (waiting.peekFirst() != waiter || !fits(cost)) {
+                    if (!bounded) {
+                        changed.await();
+                    } else if (remaining <= 0) {
+                        throw reject("attesa oltre " + maxWait.toSeconds() + "s");
+                    } else {
+                        remaining = changed.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException | AdmissionRejectedException e) {
+                waiting.remove(waiter);
+                changed.signalAll();   // il nuovo primo della coda potrebbe rientrare nel budget
+                throw e;
+            }
+            waiting.removeFirst();
+            changed.signalAll();
+            return grant(cost);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Chiamato con il lock acquisito. */
+    private boolean fits(long cost) {
+        return inFlight < maxConcurrent && (inFlight == 0 || reservedBytes + cost <= budgetBytes);
+    }
+
+    /** Chiamato con il lock acquisito. */
+    private Permit grant(long cost) {
+        reservedBytes += cost;
+        inFlight++;
+        admitted++;
+        return new Permit(cost);
+    }
+
+    /**
+     * Chiamato con il lock acquisito. Retry-After: il tempo medio di un'ingestione moltiplicato
+     * per i turni necessari a smaltire la coda attuale.
+     */
+    private AdmissionRejectedException reject(String reason) {
+        rejected++;
+        double rounds = (waiting.size() + 1.0) / maxConcurrent;
+        long retryAfter = Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, (long) Math.ceil(avgHoldSeconds * rounds)));
+        log.warn("Ingestione rifiutata: {} — memoria riservata {}/{} MB, {} in corso (Retry-After {}s)",
+                reason, reservedBytes / (1024 * 1024), budgetBytes / (1024 * 1024), inFlight, retryAfter);
+        return new AdmissionRejectedException("Ingestione non ammessa: " + reason, retryAfter);
+    }
+}
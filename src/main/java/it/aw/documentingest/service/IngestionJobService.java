@@ -0,0 +1,232 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.ChunkingParams;
+import it.aw.documentingest.model.DocumentSummary;
+import it.aw.documentingest.model.IngestionJobStatus;
+import it.aw.documentingest.model.IngestionJobStatus.State;
+import it.aw.documentingest.model.IngestionStage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Esegue le ingestioni in modalità asincrona su un pool di worker dedicato.
+ * <p>
+ * L'upload viene copiato su un file temporaneo prima di restituire il controllo
+ * al thread servlet (il MultipartFile non sopravvive alla richiesta HTTP); il job
+ * esegue poi la pipeline di IngestionService leggendo da quel file e lo cancella
+ * al termine.
+ * <p>
+ * Il pool ha un numero fisso di worker e una coda limitata: a coda piena la
+ * sottomissione fallisce con {@link RejectedExecutionException}, verificata prima di copiare
+ * l'upload su disco. Lo stato dei job è mantenuto in memoria; i job terminati vengono
+ * dimenticati dopo {@code ingest.async.retention-minutes}, con una pulizia periodica.
+ */
+@Service
+public class IngestionJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionJobService.class);
+
+    @Value("${ingest.async.workers:2}")
+    private int workers;
+
+    @Value("${ingest.async.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${ingest.async.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final IngestionService ingestionService;
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService evictor;
+    /** Posti per job in esecuzione o in coda: workers + queue-capacity. */
+    private Semaphore slots;
+
+    public IngestionJobService(IngestionService ingestionService) {
+        this.ingestionService = ingestionService;
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "ingest-worker-" + threadCounter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        slots = new Semaphore(workers + queueCapacity);
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ingest-job-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        evictor.scheduleWithFixedDelay(this::evictExpired, 1, 1, TimeUnit.MINUTES);
+        log.info("IngestionJobService: {} worker, coda max {} job", workers, queueCapacity);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        evictor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Accoda l'ingestione di un nuovo documento.
+     *
+     * @throws RejectedExecutionException se la coda dei job è piena
+     */
+    public IngestionJobStatus submitIngest(MultipartFile file, ChunkingParams params, String projectId)
+            throws IOException {
+        return submit(file, params, projectId, null);
+    }
+
+    /**
+     * Accoda la sostituzione di un documento esistente con una nuova versione.
+     *
+     * @throws RejectedExecutionException se la coda dei job è piena
+     */
+    public IngestionJobStatus submitReingest(String documentId, String projectId, MultipartFile file,
+                                             ChunkingParams params) throws IOException {
+        return submit(file, params, projectId, documentId);
+    }
+
+    public Optional<IngestionJobStatus> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(IngestionJob::toStatus);
+    }
+
+    private IngestionJobStatus submit(MultipartFile file, ChunkingParams params, String projectId,
+                                      String replacesDocumentId) throws IOException {
+        // Posto in coda prima della copia: a coda piena l'upload non viene scritto su disco
+        if (!slots.tryAcquire()) {
+            throw new RejectedExecutionException("Coda dei job di ingestione piena");
+        }
+        String filename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown";
+        Path spooled = null;
+        IngestionJob job = null;
+        try {
+            spooled = ingestionService.newSpoolFile();
+            file.transferTo(spooled);
+            job = new IngestionJob(UUID.randomUUID().toString(), projectId, filename,
+                    file.getContentType(), replacesDocumentId, params, spooled);
+            jobs.put(job.jobId, job);
+            IngestionJob queued = job;
+            executor.execute(() -> run(queued));
+        } catch (IOException | RuntimeException e) {
+            if (job != null) jobs.remove(job.jobId);
+            if (spooled != null) deleteQuietly(spooled);
+            slots.release();
+            throw e;
+        }
+        log.info("Job di ingestione accodato: {} — {} (projectId={})", job.jobId, filename, projectId);
+        return job.toStatus();
+    }
+
+    private void run(IngestionJob job) {
+        job.startedAt = LocalDateTime.now();
+        job.state = State.RUNNING;
+        try {
+            FileSystemResource content = new FileSystemResource(job.spooledFile);
+            DocumentSummary summary = job.replacesDocumentId == null
+                    ? ingestionService.ingest(job.filename, job.contentType, content,
+                            job.params, job.projectId, job)
+                    : ingestionService.reingest(job.replacesDocumentId, job.projectId, job.filename,
+                            job.contentType, content, job.params, job);
+            job.result = summary;
+            job.state = State.COMPLETED;
+        } catch (Exception e) {
+            log.error("Job di ingestione fallito: {} — {}", job.jobId, job.filename, e);
+            job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            job.state = State.FAILED;
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            deleteQuietly(job.spooledFile);
+            slots.release();
+        }
+    }
+
+    private void evictExpired() {
+        LocalDateTime threshold = LocalDateTime.now().minus(Duration.ofMinutes(retentionMinutes));
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(threshold));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Impossibile cancellare il file temporaneo {}: {}", path, e.getMessage());
+        }
+    }
+
+    /** Stato mutabile di un job: aggiornato dal worker, letto dai thread servlet. */
+    private static final class IngestionJob implements IngestionProgress {
+
+        final String         jobId;
+        final String         projectId;
+        final String         filename;
+        final String         contentType;
+        final String         replacesDocumentId;
+        final ChunkingParams params;
+        final Path           spooledFile;
+        final LocalDateTime  submittedAt = LocalDateTime.now();
+
+        volatile State           state = State.QUEUED;
+        volatile IngestionStage  stage;
+        volatile LocalDateTime   startedAt;
+        volatile LocalDateTime   finishedAt;
+        volatile int             totalPages;
+        volatile int             totalChunks;
+        volatile int             embeddedChunks;
+        volatile DocumentSummary result;
+        volatile String          error;
+
+        IngestionJob(String jobId, String projectId, String filename, String contentType,
+                     String replacesDocumentId, ChunkingParams params, Path spooledFile) {
+            this.jobId = jobId;
+            this.projectId = projectId;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.replacesDocumentId = replacesDocumentId;
+            this.params = params;
+            this.spooledFile = spooledFile;
+        }
+
+        @Override public void stage(IngestionStage stage)  { this.stage = stage; }
+        @Override public void pages(int totalPages)         { this.totalPages = totalPages; }
+        @Override public void chunks(int totalChunks)       { this.totalChunks = totalChunks; }
+        @Override public void embedded(int embeddedChunks)  { this.embeddedChunks = embeddedChunks; }
+
+        IngestionJobStatus toStatus() {
+            return new IngestionJobStatus(jobId, state, stage, projectId, filename, replacesDocumentId,
+                    submittedAt, startedAt, finishedAt, totalPages, totalChunks, embeddedChunks,
+                    result, error);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package it.aw.documentingest.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import it.aw.documentingest.model.IngestionStage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metriche Micrometer della pipeline di ingestione.
+ * <ul>
+ *   <li>{@code ingest.stage} — timer per fase, tag {@code stage}, {@code fileType}, {@code project}</li>
+ *   <li>{@code ingest.duration} — timer dell'intera ingestione, tag {@code outcome}, {@code operation}</li>
+ *   <li>{@code ingest.pages}, {@code ingest.chunks} — contatori (pagine/s e chunk/s con {@code rate()})</li>
+ *   <li>{@code ingest.chunks.cached}, {@code ingest.chunks.embedded} — chunk con embedding letto dalla
+ *       EmbeddingCache e testi calcolati dal modello, tag {@code project}</li>
+ *   <li>{@code ingest.inflight} — gauge delle ingestioni in corso</li>
+ * </ul>
+ * Il tempo di una fase va dalla sua notifica {@link IngestionProgress#stage} alla successiva
+ * (o alla fine dell'ingestione). Il tag project vale "all" salvo {@code ingest.metrics.project-tag=true}:
+ * il numero di progetti non è limitato, quindi in quel caso {@code ingest.stage} non pubblica
+ * l'istogramma dei percentili (decine di serie per ogni combinazione di tag).
+ */
+@Component
+public class IngestionMetrics {
+
+    @Value("${ingest.metrics.project-tag:false}")
+    private boolean projectTag;
+
+    private final MeterRegistry registry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public IngestionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        registry.gauge("ingest.inflight", inFlight);
+    }
+
+    /**
+     * Inizia la misura di un'ingestione; gli eventi vengono inoltrati anche a {@code delegate}.
+     * Il tracker restituito va chiuso con {@link Tracker#finish(boolean)}.
+     *
+     * @param operation "ingest" o "reingest"
+     */
+    public Tracker start(String operation, String fileType, String projectId, IngestionProgress delegate) {
+        inFlight.incrementAndGet();
+        return new Tracker(operation, Tags.of("fileType", fileType, "project", projectTag ? projectId : "all"), delegate);
+    }
+
+    /** Conta gli embedding letti dalla EmbeddingCache e quelli calcolati dal modello. */
+    public void embeddings(String projectId, int fromCache, int computed) {
+        Tags tags = Tags.of("project", projectTag ? projectId : "all");
+        Counter.builder("ingest.chunks.cached").tags(tags).register(registry).increment(fromCache);
+        Counter.builder("ingest.chunks.embedded").tags(tags).register(registry).increment(computed);
+    }
+
+    /** Osservatore di una singola ingestione: cronometra le fasi e conta pagine e chunk. */
+    public final class Tracker implements IngestionProgress {
+
+        private final String operation;
+        private final Tags tags;
+        private final IngestionProgress delegate;
+        private final Timer.Sample total;
+        private IngestionStage currentStage;
+        private long stageStart;
+        private boolean finished;
+
+        private Tracker(String operation, Tags tags, IngestionProgress delegate) {
+            this.operation = operation;
+            this.tags = tags;
+            this.delegate = delegate;
+            this.total = Timer.start(registry);
+        }
+
+        @Override
+        public void stage(IngestionStage stage) {
+            closeStage();
+            currentStage = stage;
+            stageStart = System.nanoTime();
+            delegate.stage(stage);
+        }
+
+        @Override
+        public void pages(int totalPages) {
+            counter("ingest.pages").increment(totalPages);
+            delegate.pages(totalPages);
+        }
+
+        @Override
+        public void chunks(int totalChunks) {
+            counter("ingest.chunks").increment(totalChunks);
+            delegate.chunks(totalChunks);
+        }
+
+        @Override
+        public void embedded(int embeddedChunks) {
+            delegate.embedded(embeddedChunks);
+        }
+
+        /** Chiude l'ultima fase e registra la durata complessiva con l'esito. */
+        public void finish(boolean success) {
+            if (finished) return;
+            finished = true;
+            closeStage();
+            total.stop(Timer.builder("ingest.duration")
+                    .tags(tags)
+                    .tag("operation", operation)
+                    .tag("outcome", success ? "success" : "failure")
+                    .register(registry));
+            inFlight.decrementAndGet();
+        }
+
+        private void closeStage() {
+            if (currentStage == null) return;
+            Timer.builder("ingest.stage")
+                    .tags(tags)
+                    .tag("stage", currentStage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram(!projectTag)
+                    .register(registry)
+                    .record(System.nanoTime() - stageStart, TimeUnit.NANOSECONDS);
+            currentStage = null;
+        }
+
+        private Counter counter(String name) {
+            return Counter.builder(name).tags(tags).register(registry);
+        }
+    }
+}
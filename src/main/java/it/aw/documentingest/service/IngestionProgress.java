@@ -0,0 +1,27 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.IngestionStage;
+
+/**
+ * Osservatore dell'avanzamento di una singola ingestione.
+ * <p>
+ * IngestionService notifica l'inizio di ogni fase della pipeline e i contatori
+ * principali (pagine, chunk, embedding). Tutti i metodi hanno un'implementazione
+ * vuota di default: {@link #NONE} viene usato dalle ingestioni sincrone.
+ */
+public interface IngestionProgress {
+
+    IngestionProgress NONE = new IngestionProgress() {};
+
+    /** Inizio della fase indicata. */
+    default void stage(IngestionStage stage) {}
+
+    /** Numero di pagine del PDF (non invocato per file di testo). */
+    default void pages(int totalPages) {}
+
+    /** Numero di chunk prodotti dallo splitting. */
+    default void chunks(int totalChunks) {}
+
+    /** Numero cumulativo di chunk per cui l'embedding è disponibile. */
+    default void embedded(int embeddedChunks) {}
+}
@@ -1,9 +1,6 @@
 package it.aw.documentingest.service;
 
-import dev.langchain4j.data.document.Document;
-import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.Metadata;
-import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
@@ -12,29 +9,52 @@ import it.aw.documentingest.model.ChunkInfo;
 import it.aw.documentingest.model.ChunkingParams;
 import it.aw.documentingest.model.DocumentRecord;
 import it.aw.documentingest.model.DocumentSummary;
+import it.aw.documentingest.model.IngestionStage;
 import it.aw.documentingest.registry.DocumentRegistry;
+import it.aw.documentingest.registry.EmbeddingCache;
+import it.aw.documentingest.service.OffsetDocumentSplitter.Span;
 import it.aw.documentingest.service.PdfPageParser.PagedText;
 import it.aw.documentingest.service.SectionDetector.SectionBoundary;
+import it.aw.documentingest.service.SectionPageIndex.SectionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Gestisce il ciclo di vita dei documenti: ingestione e re-ingestione.
  * <p>
  * Pipeline:
  * <ol>
- *   <li>Parse: PDF pagina per pagina via PdfPageParser; TXT testo grezzo</li>
+ *   <li>Parse: PDF pagina per pagina via PdfPageParser (in parallelo oltre una soglia di pagine);
+ *       TXT testo grezzo. Con lo spooling attivo il PDF viene letto da file temporaneo con
+ *       un budget di heap fisso per i buffer PDFBox</li>
  *   <li>Section detection: SectionDetector rileva heading con pattern espliciti</li>
- *   <li>Chunking: DocumentSplitters.recursive sul testo completo</li>
- *   <li>Metadata enrichment: per ogni chunk calcola sezione e page range</li>
- *   <li>Embedding + store</li>
+ *   <li>Chunking: OffsetDocumentSplitter (ricorsivo come DocumentSplitters.recursive) sul testo
+ *       completo, con la posizione esatta di ogni chunk</li>
+ *   <li>Metadata enrichment: per ogni chunk calcola sezione e page range dalla sua posizione</li>
+ *   <li>Embedding + store: solo i testi assenti dalla EmbeddingCache persistente vengono
+ *       inviati al modello</li>
  *   <li>Registra il DocumentRecord nel registry DuckDB</li>
  * </ol>
  */
@@ -43,23 +63,140 @@ public class IngestionService {
 
     private static final Logger log = LoggerFactory.getLogger(IngestionService.class);
     private static final int PREVIEW_LENGTH = 150;
+    private static final int DOCUMENT_LOCK_STRIPES = 64;
+
+    /** Worker per l'estrazione parallela del testo PDF (1 = sempre sequenziale). */
+    @Value("${pdf.parse.workers:4}")
+    private int pdfParseWorkers;
+
+    /** Numero minimo di pagine perché un PDF venga estratto in parallelo. */
+    @Value("${pdf.parse.parallel-min-pages:64}")
+    private int pdfParallelMinPages;
+
+    /** Se true i PDF vengono letti da file su disco invece che interamente in heap. */
+    @Value("${ingest.spool.enabled:true}")
+    private boolean spoolEnabled;
+
+    /** Directory per upload copiati su disco e file temporanei PDFBox (vuoto = java.io.tmpdir). */
+    @Value("${ingest.spool.dir:}")
+    private String spoolDir;
+
+    /** Heap massimo per i buffer PDFBox di una singola ingestione (solo con spooling attivo). */
+    @Value("${ingest.memory.pdf-heap-budget:32MB}")
+    private DataSize pdfHeapBudget;
 
     private final EmbeddingModel embeddingModel;
     private final EmbeddingStore<TextSegment> embeddingStore;
     private final DocumentRegistry registry;
+    private final SearchResultCache searchResultCache;
+    private final EmbeddingCache embeddingCache;
+    private final IngestionMetrics metrics;
+    private final IngestionAdmission admission;
+    private final FairScheduler scheduler;
+    /**
+     * Lock a strisce per documentId: re-ingest e cancellazione dello stesso documento (da HTTP,
+     * job asincroni o cartelle sorvegliate) non si sovrappongono, altrimenti due re-ingest
+     * concorrenti lascerebbero chunk orfani e un re-ingest in corsa con una DELETE
+     * registrerebbe di nuovo chunk già rimossi.
+     */
+    private final ReentrantLock[] documentLocks = new ReentrantLock[DOCUMENT_LOCK_STRIPES];
+    private ExecutorService pdfParsePool;
+    private PdfPageParser.Options pdfParseOptions;
+    private Path spoolDirectory;
 
     public IngestionService(EmbeddingModel embeddingModel,
                             EmbeddingStore<TextSegment> embeddingStore,
-                            DocumentRegistry registry) {
+                            DocumentRegistry registry,
+                            SearchResultCache searchResultCache,
+                            EmbeddingCache embeddingCache,
+                            IngestionMetrics metrics,
+                            IngestionAdmission admission,
+                            FairScheduler scheduler) {
         this.embeddingModel = embeddingModel;
         this.embeddingStore = embeddingStore;
         this.registry = registry;
+        this.searchResultCache = searchResultCache;
+        this.embeddingCache = embeddingCache;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.scheduler = scheduler;
+        for (int i = 0; i < documentLocks.length; i++) documentLocks[i] = new ReentrantLock();
     }
 
-    /** Indicizza un nuovo documento. */
+    @PostConstruct
+    void init() throws IOException {
+        spoolDirectory = spoolDir.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"))
+                : Files.createDirectories(Paths.get(spoolDir));
+        if (pdfParseWorkers > 1) {
+            AtomicInteger threadCounter = new AtomicInteger();
+            pdfParsePool = Executors.newFixedThreadPool(pdfParseWorkers, r -> {
+                Thread t = new Thread(r, "pdf-parse-" + threadCounter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            log.info("Estrazione PDF parallela: {} worker, soglia {} pagine", pdfParseWorkers, pdfParallelMinPages);
+        }
+        pdfParseOptions = new PdfPageParser.Options(
+                Math.max(pdfParseWorkers, 1), pdfParallelMinPages, pdfParsePool,
+                spoolEnabled ? pdfHeapBudget.toBytes() : -1,
+                spoolDirectory.toFile());
+        if (spoolEnabled) {
+            log.info("Spooling upload su {} — budget heap PDFBox {} per ingestione", spoolDirectory, pdfHeapBudget);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (pdfParsePool != null) pdfParsePool.shutdownNow();
+    }
+
+    /**
+     * Indicizza un nuovo documento.
+     *
+     * @throws AdmissionRejectedException se il controllo di ammissione non trova posto entro l'attesa massima
+     */
     public DocumentSummary ingest(MultipartFile file, ChunkingParams params, String projectId) throws IOException {
-        String filename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown";
-        return doIngest(filename, file, params, projectId);
+        String filename = filenameOf(file);
+        try (IngestionAdmission.Permit permit = admission.tryAdmit(
+                admission.estimateCost(file.getSize(), fileType(file.getContentType(), filename)))) {
+            return trackedIngest(filename, file.getContentType(), file.getResource(),
+                    params, projectId, IngestionProgress.NONE);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    /**
+     * Indicizza un nuovo documento a partire da un contenuto già disponibile
+     * (es. upload copiato su file temporaneo da un job asincrono).
+     * L'avanzamento delle fasi viene notificato a {@code progress}.
+     * Attende senza limite il proprio turno nel controllo di ammissione.
+     */
+    public DocumentSummary ingest(String filename, String contentType, Resource content,
+                                  ChunkingParams params, String projectId, IngestionProgress progress)
+            throws IOException {
+        try (IngestionAdmission.Permit permit = admission.admit(
+                admission.estimateCost(content.contentLength(), fileType(contentType, filename)))) {
+            return trackedIngest(filename, contentType, content, params, projectId, progress);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    private DocumentSummary trackedIngest(String filename, String contentType, Resource content,
+                                          ChunkingParams params, String projectId, IngestionProgress progress)
+            throws IOException {
+        IngestionMetrics.Tracker tracker = metrics.start("ingest", fileType(contentType, filename), projectId, progress);
+        boolean success = false;
+        try {
+            DocumentSummary summary = doIngest(UUID.randomUUID().toString(), filename, contentType, content,
+                    params, projectId, tracker);
+            success = true;
+            return summary;
+        } finally {
+            tracker.finish(success);
+        }
     }
 
     /**
@@ -67,117 +204,385 @@ public class IngestionService {
      * e il record dal registry. Restituisce {@code false} se il documento non esiste.
      */
     public boolean delete(String documentId) {
-        Optional<List<String>> chunkIds = registry.remove(documentId);
-        if (chunkIds.isEmpty()) return false;
-        if (!chunkIds.get().isEmpty()) {
-            embeddingStore.removeAll(chunkIds.get());
+        ReentrantLock lock = documentLock(documentId);
+        lock.lock();
+        try {
+            Optional<DocumentRegistry.RemovedDocument> removed = registry.remove(documentId);
+            if (removed.isEmpty()) return false;
+            if (!removed.get().chunkIds().isEmpty()) {
+                embeddingStore.removeAll(removed.get().chunkIds());
+            }
+            searchResultCache.invalidateProject(removed.get().projectId());
+            return true;
+        } finally {
+            lock.unlock();
         }
-        return true;
     }
 
     /**
-     * Sostituisce un documento esistente con una nuova versione.
+     * Sostituisce un documento esistente con una nuova versione, mantenendo il documentId.
      * Il projectId viene ereditato dal documento originale.
-     * I chunk della versione precedente vengono rimossi fisicamente dall'embedding store.
-     * Il nuovo documento viene indicizzato con il nome del file caricato e un nuovo documentId.
+     * <p>
+     * Re-ingest differenziale: la nuova versione viene suddivisa in chunk e ogni chunk viene
+     * confrontato con quelli della versione precedente tramite l'hash del testo. I chunk con stesso
+     * testo, sezione e pagine restano nell'embedding store; quelli con lo stesso testo in un'altra
+     * posizione vengono riaggiunti con i nuovi metadati e l'embedding della EmbeddingCache, senza
+     * ricalcolo; solo quelli nuovi passano dal modello, solo quelli scomparsi vengono rimossi. Il record del registry viene
+     * sostituito con un'unica scrittura dopo l'aggiunta dei nuovi chunk e prima della rimozione
+     * dei vecchi: il documento non sparisce mai dai risultati di ricerca. Se il documento non è
+     * (più) nel registry viene indicizzato da zero con lo stesso documentId.
      */
     public DocumentSummary reingest(String documentId, String projectId, MultipartFile file, ChunkingParams params)
             throws IOException {
-        delete(documentId);
-        String newFilename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown";
-        return doIngest(newFilename, file, params, projectId);
+        String filename = filenameOf(file);
+        try (IngestionAdmission.Permit permit = admission.tryAdmit(
+                admission.estimateCost(file.getSize(), fileType(file.getContentType(), filename)))) {
+            return trackedReingest(documentId, projectId, filename, file.getContentType(), file.getResource(),
+                    params, IngestionProgress.NONE);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    /** Variante di {@link #reingest(String, String, MultipartFile, ChunkingParams)} usata dai job asincroni. */
+    public DocumentSummary reingest(String documentId, String projectId, String filename, String contentType,
+                                    Resource content, ChunkingParams params, IngestionProgress progress)
+            throws IOException {
+        try (IngestionAdmission.Permit permit = admission.admit(
+                admission.estimateCost(content.contentLength(), fileType(contentType, filename)))) {
+            return trackedReingest(documentId, projectId, filename, contentType, content, params, progress);
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        }
+    }
+
+    private DocumentSummary trackedReingest(String documentId, String projectId, String filename, String contentType,
+                                            Resource content, ChunkingParams params, IngestionProgress progress)
+            throws IOException {
+        IngestionMetrics.Tracker tracker = metrics.start("reingest", fileType(contentType, filename), projectId, progress);
+        ReentrantLock lock = documentLock(documentId);
+        boolean success = false;
+        lock.lock();
+        try {
+            DocumentSummary summary = doReingest(documentId, projectId, filename, contentType, content, params, tracker);
+            success = true;
+            return summary;
+        } finally {
+            lock.unlock();
+            tracker.finish(success);
+        }
+    }
+
+    private ReentrantLock documentLock(String documentId) {
+        return documentLocks[Math.floorMod(documentId.hashCode(), documentLocks.length)];
+    }
+
+    private DocumentSummary doReingest(String documentId, String projectId, String filename, String contentType,
+                                       Resource content, ChunkingParams params, IngestionProgress progress)
+            throws IOException {
+        Optional<DocumentRegistry.StoredChunks> previous = registry.findChunks(documentId);
+        if (previous.isEmpty()) {
+            return doIngest(documentId, filename, contentType, content, params, projectId, progress);
+        }
+        log.info("Inizio re-ingest differenziale: {} — chunkSize={}, overlap={}, documentId={}",
+                filename, params.chunkSize(), params.overlap(), documentId);
+        PreparedDocument doc = prepare(documentId, filename, contentType, content, params, projectId, progress);
+
+        // Abbinamento per testo; i chunk spostati vengono riaggiunti con l'embedding della cache
+        DocumentRegistry.StoredChunks old = previous.get();
+        ChunkMatcher.Match match = ChunkMatcher.match(old.filename(), old.chunkIds(), old.chunkHashes(), old.chunks(),
+                filename, doc.chunkHashes(), doc.previews());
+        List<String> chunkIds = match.chunkIds();
+        List<Integer> addedPositions = match.addedPositions();
+        List<String> removedIds = match.removedIds();
+        int moved = match.moved();
+
+        // Embedding + store dei chunk nuovi o spostati
+        progress.stage(IngestionStage.EMBED);
+        List<TextSegment> added = new ArrayList<>(addedPositions.size());
+        for (int pos : addedPositions) added.add(doc.segments().get(pos));
+        CachedEmbeddings cached = embedWithCache(added, projectId);
+        progress.embedded(doc.segments().size());
+        progress.stage(IngestionStage.STORE);
+        if (!added.isEmpty()) {
+            List<String> addedIds = scheduler.run(projectId, added.size(),
+                    () -> embeddingStore.addAll(cached.embeddings(), added));
+            for (int i = 0; i < addedPositions.size(); i++) chunkIds.set(addedPositions.get(i), addedIds.get(i));
+        }
+
+        // Switch del record, poi rimozione dei chunk scomparsi
+        progress.stage(IngestionStage.REGISTER);
+        int kept = doc.segments().size() - added.size();
+        DocumentRecord record = doc.toRecord(cached.fromCache());
+        registry.register(record, chunkIds, doc.chunkHashes());
+        if (!removedIds.isEmpty()) {
+            embeddingStore.removeAll(removedIds);
+        }
+        searchResultCache.invalidateProject(projectId);
+
+        log.info("Re-ingest completato: {} — {} chunk ({} invariati, {} spostati, {} aggiunti, {} rimossi) (documentId={})",
+                filename, doc.segments().size(), kept, moved, added.size() - moved, removedIds.size() - moved, documentId);
+        return record.toSummary();
     }
 
-    private DocumentSummary doIngest(String filename, MultipartFile file, ChunkingParams params, String projectId)
+    private DocumentSummary doIngest(String documentId, String filename, String contentType, Resource content,
+                                     ChunkingParams params, String projectId, IngestionProgress progress)
             throws IOException {
-        String documentId = UUID.randomUUID().toString();
         log.info("Inizio ingestione: {} — chunkSize={}, overlap={}, documentId={}",
                 filename, params.chunkSize(), params.overlap(), documentId);
+        PreparedDocument doc = prepare(documentId, filename, contentType, content, params, projectId, progress);
+
+        // [5] Embedding + store
+        progress.stage(IngestionStage.EMBED);
+        CachedEmbeddings cached = embedWithCache(doc.segments(), projectId);
+        List<Embedding> embeddings = cached.embeddings();
+        progress.embedded(embeddings.size());
+        progress.stage(IngestionStage.STORE);
+        List<String> chunkIds = scheduler.run(projectId, embeddings.size(),
+                () -> embeddingStore.addAll(embeddings, doc.segments()));
+
+        // [6] Register
+        progress.stage(IngestionStage.REGISTER);
+        DocumentRecord record = doc.toRecord(cached.fromCache());
+        registry.register(record, chunkIds, doc.chunkHashes());
+        searchResultCache.invalidateProject(projectId);
+
+        log.info("Ingestione completata: {} — {} chunk ({} da embedding cache), {} sezioni L1 (documentId={})",
+                filename, doc.segments().size(), cached.fromCache(), doc.sectionCount(), documentId);
+        return record.toSummary();
+    }
+
+    // -------------------------------------------------------------------------
+    // Fasi della pipeline usate singolarmente da BulkIngestionService
+    // -------------------------------------------------------------------------
+
+    /** Fasi [1]-[4] per un nuovo documento, con documentId generato. */
+    PreparedDocument prepareNew(String filename, String contentType, Resource content,
+                                ChunkingParams params, String projectId, IngestionProgress progress)
+            throws IOException {
+        return prepare(UUID.randomUUID().toString(), filename, contentType, content, params, projectId, progress);
+    }
+
+    /** Fase [5a]: embedding dei chunk del documento, con EmbeddingCache. */
+    CachedEmbeddings embed(PreparedDocument doc) {
+        return embedWithCache(doc.segments(), doc.projectId());
+    }
+
+    /**
+     * Fasi [5b]-[6] per più documenti nuovi: un solo {@code addAll} sull'embedding store e una sola
+     * transazione sul registry. Se la registrazione fallisce i chunk appena aggiunti vengono rimossi.
+     *
+     * @return summary dei documenti, nello stesso ordine di {@code docs}
+     */
+    List<DocumentSummary> storeAll(List<PreparedDocument> docs, List<CachedEmbeddings> embedded) {
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < docs.size(); i++) {
+            embeddings.addAll(embedded.get(i).embeddings());
+            segments.addAll(docs.get(i).segments());
+        }
+        List<String> ids = segments.isEmpty() ? List.of()
+                : scheduler.run(docs.get(0).projectId(), segments.size(), () -> embeddingStore.addAll(embeddings, segments));
+
+        List<DocumentRegistry.Registration> registrations = new ArrayList<>(docs.size());
+        List<DocumentSummary> summaries = new ArrayList<>(docs.size());
+        int from = 0;
+        for (int i = 0; i < docs.size(); i++) {
+            PreparedDocument doc = docs.get(i);
+            int to = from + doc.segments().size();
+            DocumentRecord record = doc.toRecord(embedded.get(i).fromCache());
+            registrations.add(new DocumentRegistry.Registration(
+                    record, new ArrayList<>(ids.subList(from, to)), doc.chunkHashes()));
+            summaries.add(record.toSummary());
+            from = to;
+        }
+        try {
+            registry.registerAll(registrations);
+        } catch (RuntimeException e) {
+            if (!ids.isEmpty()) embeddingStore.removeAll(ids);
+            throw e;
+        }
+        docs.stream().map(PreparedDocument::projectId).distinct().forEach(searchResultCache::invalidateProject);
+        log.info("Ingestione bulk: registrati {} documenti, {} chunk", docs.size(), ids.size());
+        return summaries;
+    }
+
+    /** Documento analizzato e suddiviso in chunk, pronto per embedding e store. */
+    record PreparedDocument(
+            String documentId, String filename, String projectId, ChunkingParams params,
+            int sectionCount, long textBytes, List<TextSegment> segments, List<ChunkInfo> previews,
+            List<String> chunkHashes) {
 
+        DocumentRecord toRecord(int cachedChunks) {
+            return new DocumentRecord(
+                    projectId, documentId, filename, LocalDateTime.now(),
+                    segments.size(), params.chunkSize(), params.overlap(),
+                    sectionCount, cachedChunks, textBytes, previews);
+        }
+    }
+
+    /** Fasi [1]-[4] della pipeline: parse, section detection, chunking, metadata enrichment. */
+    private PreparedDocument prepare(String documentId, String filename, String contentType, Resource content,
+                                     ChunkingParams params, String projectId, IngestionProgress progress)
+            throws IOException {
         // [1] Parse + info pagina
-        boolean isPdf = isPdf(file, filename);
+        progress.stage(IngestionStage.PARSE);
+        boolean isPdf = isPdf(contentType, filename);
         String fullText;
         PagedText pagedText = null;
         if (isPdf) {
-            try (var is = file.getInputStream()) {
-                pagedText = PdfPageParser.parse(is);
-            }
+            pagedText = parsePdf(content);
             fullText = pagedText.fullText();
+            progress.pages(pagedText.pageOffsets().size());
         } else {
-            fullText = new String(file.getBytes(), StandardCharsets.UTF_8);
+            try (InputStream is = content.getInputStream()) {
+                fullText = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            }
         }
 
         // [2] Section detection
+        progress.stage(IngestionStage.DETECT);
         List<SectionBoundary> boundaries = SectionDetector.detect(fullText);
         int sectionCount = (int) boundaries.stream()
                 .filter(b -> b.level() == 1).count();
         log.debug("Section detection: {} heading rilevati, {} sezioni L1", boundaries.size(), sectionCount);
 
         // [3] Chunking sul testo completo
-        DocumentSplitter splitter = DocumentSplitters.recursive(params.chunkSize(), params.overlap());
+        progress.stage(IngestionStage.SPLIT);
+        OffsetDocumentSplitter splitter = new OffsetDocumentSplitter(params.chunkSize(), params.overlap());
         Metadata baseMetadata = new Metadata();
         baseMetadata.put("filename", filename);
         baseMetadata.put("documentId", documentId);
         baseMetadata.put("projectId", projectId);
-        Document document = Document.from(fullText, baseMetadata);
-        List<TextSegment> segments = splitter.split(document);
+        List<Span> spans = splitter.split(fullText, baseMetadata);
+        List<TextSegment> segments = new ArrayList<>(spans.size());
+        for (Span span : spans) segments.add(span.segment());
+        progress.chunks(segments.size());
 
         // [4] Metadata enrichment: sezione + pagina per ogni chunk
-        List<ChunkInfo> previews = enrichSegments(segments, fullText, boundaries, pagedText);
+        progress.stage(IngestionStage.ENRICH);
+        List<ChunkInfo> previews = enrichSegments(spans, boundaries, pagedText);
+        List<String> chunkHashes = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) chunkHashes.add(EmbeddingCache.hash(segment.text()));
 
-        // [5] Embedding + store
-        List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
-        List<String> chunkIds = embeddingStore.addAll(embeddings, segments);
+        return new PreparedDocument(documentId, filename, projectId, params,
+                sectionCount, utf8Length(fullText), segments, previews, chunkHashes);
+    }
 
-        // [6] Register
-        DocumentRecord record = new DocumentRecord(
-                projectId, documentId, filename, LocalDateTime.now(),
-                segments.size(), params.chunkSize(), params.overlap(),
-                sectionCount, previews);
-        registry.register(record, chunkIds);
-
-        log.info("Ingestione completata: {} — {} chunk, {} sezioni L1 (documentId={})",
-                filename, segments.size(), sectionCount, documentId);
-        return record.toSummary();
+    /** Lunghezza in byte della codifica UTF-8, senza allocare l'array di byte. */
+    private static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) bytes += 1;
+            else if (c < 0x800) bytes += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) { bytes += 4; i++; }
+            else bytes += 3;
+        }
+        return bytes;
+    }
+
+    /** Embedding dei chunk nell'ordine dei segmenti, con il numero di quelli letti dalla cache. */
+    record CachedEmbeddings(List<Embedding> embeddings, int fromCache) {}
+
+    /**
+     * Calcola gli embedding dei segmenti passando al modello solo i testi mai visti:
+     * gli altri vengono letti dalla EmbeddingCache. I testi ripetuti nello stesso
+     * documento vengono calcolati una sola volta; i nuovi embedding vengono salvati in cache.
+     * Il calcolo avviene a porzioni assegnate dal FairScheduler al progetto.
+     */
+    private CachedEmbeddings embedWithCache(List<TextSegment> segments, String projectId) {
+        List<String> hashes = new ArrayList<>(segments.size());
+        for (TextSegment s : segments) hashes.add(EmbeddingCache.hash(s.text()));
+
+        Map<String, Embedding> known = embeddingCache.findAll(new HashSet<>(hashes));
+        int fromCache = 0;
+        Map<String, TextSegment> missing = new LinkedHashMap<>();
+        for (int i = 0; i < segments.size(); i++) {
+            if (known.containsKey(hashes.get(i))) fromCache++;
+            else missing.putIfAbsent(hashes.get(i), segments.get(i));
+        }
+        metrics.embeddings(projectId, fromCache, missing.size());
+
+        if (!missing.isEmpty()) {
+            List<TextSegment> texts = new ArrayList<>(missing.values());
+            List<Embedding> computed = new ArrayList<>(texts.size());
+            for (int from = 0; from < texts.size(); from += scheduler.sliceSize()) {
+                List<TextSegment> slice = texts.subList(from, Math.min(from + scheduler.sliceSize(), texts.size()));
+                computed.addAll(scheduler.run(projectId, slice.size(), () -> embeddingModel.embedAll(slice).content()));
+            }
+            Map<String, Embedding> fresh = new LinkedHashMap<>();
+            int i = 0;
+            for (String hash : missing.keySet()) fresh.put(hash, computed.get(i++));
+            embeddingCache.putAll(fresh);
+            known.putAll(fresh);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(segments.size());
+        for (String hash : hashes) embeddings.add(known.get(hash));
+        return new CachedEmbeddings(embeddings, fromCache);
+    }
+
+    /**
+     * Estrae il testo del PDF. Con lo spooling attivo il documento viene sempre letto da file:
+     * direttamente se il contenuto è già su disco (job asincroni), altrimenti dopo una copia
+     * in streaming nella directory di spool.
+     */
+    private PagedText parsePdf(Resource content) throws IOException {
+        if (!spoolEnabled) {
+            try (InputStream is = content.getInputStream()) {
+                return PdfPageParser.parse(is, pdfParseOptions);
+            }
+        }
+        if (content.isFile()) {
+            return PdfPageParser.parse(content.getFile(), pdfParseOptions);
+        }
+        Path spooled = newSpoolFile();
+        try {
+            try (InputStream is = content.getInputStream()) {
+                Files.copy(is, spooled, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return PdfPageParser.parse(spooled.toFile(), pdfParseOptions);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    /** Crea un file temporaneo vuoto nella directory di spool configurata. */
+    Path newSpoolFile() throws IOException {
+        return Files.createTempFile(spoolDirectory, "ingest-", ".upload");
     }
 
-    private List<ChunkInfo> enrichSegments(
-            List<TextSegment> segments,
-            String fullText,
+    /** Package-private e statico per i benchmark JMH (profilo {@code benchmark}). */
+    static List<ChunkInfo> enrichSegments(
+            List<Span> spans,
             List<SectionBoundary> boundaries,
             PagedText pagedText) {
 
-        List<ChunkInfo> previews = new ArrayList<>(segments.size());
+        List<ChunkInfo> previews = new ArrayList<>(spans.size());
         Map<String, Integer> sectionChunkCounter = new HashMap<>();
-        int searchFrom = 0;
+        SectionPageIndex index = SectionPageIndex.build(boundaries, pagedText);
 
-        for (TextSegment segment : segments) {
+        for (Span span : spans) {
+            TextSegment segment = span.segment();
             String chunkText = segment.text();
 
-            // Stima offset del chunk nel fullText con ricerca progressiva
-            int chunkOffset = fullText.indexOf(chunkText, searchFrom);
-            if (chunkOffset < 0) chunkOffset = fullText.indexOf(chunkText);
-            if (chunkOffset >= 0) searchFrom = chunkOffset + 1;
-
-            int effectiveOffset = Math.max(chunkOffset, 0);
-
             // Gerarchia sezioni all'offset del chunk
-            String[] h = SectionDetector.hierarchyAt(effectiveOffset, boundaries);
-            String l1 = h[0], l2 = h[1], l3 = h[2];
+            SectionContext section = index.sectionAt(span.start());
+            String l1 = section.l1(), l2 = section.l2(), l3 = section.l3();
 
-            String sectionPath  = buildPath(l1, l2, l3);
-            int    sectionLevel = (l3 != null) ? 3 : (l2 != null) ? 2 : (l1 != null) ? 1 : 0;
-            String sectionTitle = (l3 != null) ? l3 : (l2 != null) ? l2 : (l1 != null) ? l1 : "";
+            String sectionPath  = section.path();
+            int    sectionLevel = section.level();
+            String sectionTitle = section.title();
 
             int chunkIndex = sectionChunkCounter.getOrDefault(sectionPath, 0);
             sectionChunkCounter.put(sectionPath, chunkIndex + 1);
 
             // Page range (solo PDF)
             Integer pageStart = null, pageEnd = null;
-            if (pagedText != null && chunkOffset >= 0) {
-                int[] range = pagedText.pageRangeFor(chunkOffset, chunkOffset + chunkText.length());
-                if (range != null) { pageStart = range[0]; pageEnd = range[1]; }
-            }
+            int[] range = index.pageRangeFor(span.start(), span.end());
+            if (range != null) { pageStart = range[0]; pageEnd = range[1]; }
 
             // Scrivi metadati nel TextSegment (per l'embedding store)
             Metadata meta = segment.metadata();
@@ -202,16 +607,21 @@ public class IngestionService {
         return previews;
     }
 
-    private String buildPath(String l1, String l2, String l3) {
-        List<String> parts = new ArrayList<>();
-        if (l1 != null) parts.add(l1);
-        if (l2 != null) parts.add(l2);
-        if (l3 != null) parts.add(l3);
-        return String.join(" / ", parts);
+    private static String filenameOf(MultipartFile file) {
+        return file.getOriginalFilename() != null ? file.getOriginalFilename() : "unknown";
+    }
+
+    private static InterruptedIOException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new InterruptedIOException("Interrotto in attesa dell'ammissione");
+    }
+
+    String fileType(String contentType, String filename) {
+        return isPdf(contentType, filename) ? "pdf" : "text";
     }
 
-    private boolean isPdf(MultipartFile file, String filename) {
-        return "application/pdf".equals(file.getContentType())
+    private boolean isPdf(String contentType, String filename) {
+        return "application/pdf".equals(contentType)
                 || filename.toLowerCase().endsWith(".pdf");
     }
 }
@@ -0,0 +1,173 @@
+package it.aw.documentingest.service;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.text.BreakIterator;
+import java.text.StringCharacterIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splitter ricorsivo che restituisce, insieme a ogni {@link TextSegment}, la sua posizione
+ * esatta {@code [start, end)} nel testo di origine.
+ * <p>
+ * Segue la stessa gerarchia di {@code DocumentSplitters.recursive}: paragrafi (righe vuote),
+ * righe, frasi, parole e infine caratteri. Il testo viene scomposto in unità che non superano
+ * {@code maxSegmentSize}, usando il livello successivo solo per le unità troppo grandi; le unità
+ * consecutive vengono poi accorpate finché il chunk resta entro il limite. L'overlap è allineato
+ * all'inizio di frase: il chunk successivo riparte dalle ultime frasi del precedente che stanno
+ * in {@code maxOverlapSize} caratteri (nessun overlap se l'ultima frase è più lunga).
+ * <p>
+ * Il testo di ogni segmento è la sottostringa {@code text.substring(start, end)}: separatori e
+ * spazi interni sono quelli originali. L'intera scomposizione è lineare nella lunghezza del testo.
+ */
+public class OffsetDocumentSplitter implements DocumentSplitter {
+
+    private static final Locale LOCALE = Locale.ITALIAN;
+
+    /** Chunk con la sua posizione nel testo di origine (end esclusivo). */
+    public record Span(TextSegment segment, int start, int end) {}
+
+    private final int maxSegmentSize;
+    private final int maxOverlapSize;
+
+    public OffsetDocumentSplitter(int maxSegmentSize, int maxOverlapSize) {
+        this.maxSegmentSize = maxSegmentSize;
+        this.maxOverlapSize = maxOverlapSize;
+    }
+
+    @Override
+    public List<TextSegment> split(Document document) {
+        List<Span> spans = split(document.text(), document.metadata());
+        List<TextSegment> segments = new ArrayList<>(spans.size());
+        for (Span span : spans) segments.add(span.segment());
+        return segments;
+    }
+
+    /**
+     * Suddivide il testo in chunk. Ogni segmento riceve una copia di {@code baseMetadata}
+     * più la chiave {@code index} con la posizione 0-based del chunk.
+     */
+    public List<Span> split(String text, Metadata baseMetadata) {
+        List<int[]> units = new ArrayList<>();
+        decompose(text, 0, text.length(), 0, units);
+
+        List<Span> spans = new ArrayList<>();
+        BreakIterator sentences = BreakIterator.getSentenceInstance(LOCALE);
+        int i = 0;
+        int overlapStart = -1;
+        while (i < units.size()) {
+            int start = units.get(i)[0];
+            if (overlapStart >= 0 && units.get(i)[1] - overlapStart <= maxSegmentSize) {
+                start = overlapStart;
+            }
+            int end = units.get(i)[1];
+            int j = i + 1;
+            while (j < units.size() && units.get(j)[1] - start <= maxSegmentSize) {
+                end = units.get(j)[1];
+                j++;
+            }
+            Metadata metadata = baseMetadata.copy();
+            metadata.put("index", String.valueOf(spans.size()));
+            spans.add(new Span(TextSegment.from(text.substring(start, end), metadata), start, end));
+
+            overlapStart = j < units.size() ? overlapStart(text, start, end, sentences) : -1;
+            i = j;
+        }
+        return spans;
+    }
+
+    /**
+     * Scompone {@code [from, to)} in unità non più lunghe di maxSegmentSize, senza spazi
+     * iniziali o finali. Livelli: 0 paragrafi, 1 righe, 2 frasi, 3 parole, 4 caratteri.
+     */
+    private void decompose(String text, int from, int to, int level, List<int[]> out) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) from++;
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) to--;
+        if (from >= to) return;
+        if (to - from <= maxSegmentSize) {
+            out.add(new int[]{from, to});
+            return;
+        }
+        switch (level) {
+            case 0 -> splitParagraphs(text, from, to, out);
+            case 1 -> splitOn(text, from, to, '\n', 1, out);
+            case 2 -> splitSentences(text, from, to, out);
+            case 3 -> splitWords(text, from, to, out);
+            default -> {
+                for (int p = from; p < to; p += maxSegmentSize) {
+                    out.add(new int[]{p, Math.min(p + maxSegmentSize, to)});
+                }
+            }
+        }
+    }
+
+    /** Paragrafi: separati da una riga vuota (due '\n' con soli spazi in mezzo). */
+    private void splitParagraphs(String text, int from, int to, List<int[]> out) {
+        int partStart = from;
+        int p = from;
+        while (p < to) {
+            if (text.charAt(p) == '\n') {
+                int q = p + 1;
+                while (q < to && text.charAt(q) != '\n' && Character.isWhitespace(text.charAt(q))) q++;
+                if (q < to && text.charAt(q) == '\n') {
+                    decompose(text, partStart, p, 1, out);
+                    while (q < to && Character.isWhitespace(text.charAt(q))) q++;
+                    partStart = q;
+                    p = q;
+                    continue;
+                }
+            }
+            p++;
+        }
+        decompose(text, partStart, to, 1, out);
+    }
+
+    private void splitOn(String text, int from, int to, char separator, int level, List<int[]> out) {
+        int partStart = from;
+        for (int p = from; p < to; p++) {
+            if (text.charAt(p) == separator) {
+                decompose(text, partStart, p, level + 1, out);
+                partStart = p + 1;
+            }
+        }
+        decompose(text, partStart, to, level + 1, out);
+    }
+
+    private void splitSentences(String text, int from, int to, List<int[]> out) {
+        BreakIterator it = BreakIterator.getSentenceInstance(LOCALE);
+        it.setText(new StringCharacterIterator(text, from, to, from));
+        int start = it.first();
+        for (int end = it.next(); end != BreakIterator.DONE; start = end, end = it.next()) {
+            decompose(text, start, end, 3, out);
+        }
+    }
+
+    private void splitWords(String text, int from, int to, List<int[]> out) {
+        int p = from;
+        while (p < to) {
+            while (p < to && Character.isWhitespace(text.charAt(p))) p++;
+            int wordStart = p;
+            while (p < to && !Character.isWhitespace(text.charAt(p))) p++;
+            if (p > wordStart) decompose(text, wordStart, p, 4, out);
+        }
+    }
+
+    /**
+     * Inizio dell'overlap per il chunk successivo a {@code [start, end)}: il primo inizio di frase
+     * successivo a start da cui mancano al più maxOverlapSize caratteri a end, oppure -1.
+     */
+    private int overlapStart(String text, int start, int end, BreakIterator sentences) {
+        if (maxOverlapSize <= 0 || end - start <= 1) return -1;
+        sentences.setText(new StringCharacterIterator(text, start, end, start));
+        int min = Math.max(start, end - maxOverlapSize);
+        int b = (min > start && sentences.isBoundary(min)) ? min : sentences.following(min);
+        if (b == BreakIterator.DONE) return -1;
+        while (b < end && Character.isWhitespace(text.charAt(b))) b++;
+        return b < end ? b : -1;
+    }
+}
@@ -1,14 +1,20 @@
 package it.aw.documentingest.service;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Parsatore PDF pagina per pagina via PDFBox.
@@ -17,6 +23,17 @@ import java.util.List;
  * e la mappa degli offset per sapere dove inizia e finisce ogni pagina
  * nel testo concatenato. Questa informazione viene usata da IngestionService
  * per calcolare pageStart/pageEnd di ogni chunk dopo il splitting.
+ * <p>
+ * Per documenti con molte pagine l'estrazione può essere distribuita su più worker
+ * (vedi {@link Options}): ogni worker apre un proprio {@link PDDocument} e usa un proprio
+ * {@link PDFTextStripper} su un intervallo contiguo di pagine, poiché nessuno dei due
+ * è thread-safe. I testi vengono poi ricomposti nell'ordine originale, quindi
+ * {@link PagedText#pageOffsets()} è identico a quello dell'estrazione sequenziale.
+ * <p>
+ * Per i PDF già presenti su disco ({@link #parse(File, Options)}) il documento viene
+ * letto dal file e PDFBox usa al più {@link Options#maxMainMemoryBytes()} di heap per i
+ * propri buffer, spostando il resto su file temporanei: l'occupazione di heap del
+ * parsing non cresce con la dimensione del file.
  */
 public class PdfPageParser {
 
@@ -60,27 +77,139 @@ public class PdfPageParser {
     }
 
     /**
-     * Esegue il parsing del PDF dall'input stream.
+     * Opzioni di estrazione.
+     *
+     * @param workers            numero massimo di worker per documento (1 = sequenziale)
+     * @param parallelMinPages   soglia minima di pagine sotto la quale l'estrazione resta sequenziale
+     * @param executor           pool su cui eseguire i worker (null = sequenziale)
+     * @param maxMainMemoryBytes heap massimo per i buffer PDFBox di un'ingestione, ripartito tra
+     *                           i worker; oltre si usano file temporanei (-1 = solo heap, nessun limite)
+     * @param tempDir            directory dei file temporanei PDFBox (null = java.io.tmpdir)
+     */
+    public record Options(int workers, int parallelMinPages, ExecutorService executor,
+                          long maxMainMemoryBytes, File tempDir) {
+
+        public static Options sequential() {
+            return new Options(1, Integer.MAX_VALUE, null, -1, null);
+        }
+
+        boolean parallelFor(int totalPages) {
+            return executor != null && workers > 1 && totalPages >= parallelMinPages;
+        }
+
+        /** Impostazione di memoria per ciascuno degli {@code handles} documenti aperti in parallelo. */
+        MemoryUsageSetting memoryFor(int handles) {
+            if (maxMainMemoryBytes < 0) return MemoryUsageSetting.setupMainMemoryOnly();
+            return MemoryUsageSetting.setupMixed(maxMainMemoryBytes / handles).setTempDir(tempDir);
+        }
+    }
+
+    /** Apre un nuovo handle indipendente sullo stesso PDF. */
+    @FunctionalInterface
+    private interface DocumentSource {
+        PDDocument open(MemoryUsageSetting memory) throws IOException;
+    }
+
+    /**
+     * Esegue il parsing sequenziale del PDF dall'input stream.
      * L'input stream NON viene chiuso dal metodo: la responsabilità è del chiamante.
      */
     public static PagedText parse(InputStream inputStream) throws IOException {
-        try (PDDocument doc = PDDocument.load(inputStream)) {
-            int totalPages = doc.getNumberOfPages();
+        return parse(inputStream, Options.sequential());
+    }
+
+    /**
+     * Esegue il parsing del PDF dall'input stream, in parallelo se il numero di pagine
+     * raggiunge la soglia indicata nelle opzioni. Lo stream viene letto interamente in heap:
+     * per file grandi preferire {@link #parse(File, Options)}.
+     * L'input stream NON viene chiuso dal metodo: la responsabilità è del chiamante.
+     */
+    public static PagedText parse(InputStream inputStream, Options options) throws IOException {
+        // I byte servono a riaprire il documento in ogni worker; PDDocument.load(InputStream)
+        // bufferizza comunque l'intero stream in memoria.
+        byte[] data = inputStream.readAllBytes();
+        return parse(memory -> PDDocument.load(data, null, null, null, memory), options);
+    }
+
+    /**
+     * Esegue il parsing del PDF leggendolo da file, con i buffer PDFBox limitati
+     * a {@link Options#maxMainMemoryBytes()}.
+     */
+    public static PagedText parse(File file, Options options) throws IOException {
+        return parse(memory -> PDDocument.load(file, memory), options);
+    }
+
+    private static PagedText parse(DocumentSource source, Options options) throws IOException {
+        int totalPages;
+        try (PDDocument doc = source.open(options.memoryFor(1))) {
+            totalPages = doc.getNumberOfPages();
             log.debug("PdfPageParser: {} pagine trovate", totalPages);
+            if (!options.parallelFor(totalPages)) {
+                return assemble(extractRange(doc, 1, totalPages));
+            }
+        }
+        return assemble(extractParallel(source, totalPages, options));
+    }
 
-            PDFTextStripper stripper = new PDFTextStripper();
-            StringBuilder sb = new StringBuilder();
-            List<int[]> offsets = new ArrayList<>(totalPages);
+    /**
+     * Suddivide le pagine in intervalli contigui, uno per worker, e concatena
+     * i risultati nell'ordine delle pagine.
+     */
+    private static List<String> extractParallel(DocumentSource source, int totalPages, Options options)
+            throws IOException {
+        int workers = Math.min(options.workers(), totalPages);
+        MemoryUsageSetting memory = options.memoryFor(workers);
+        int pagesPerWorker = (totalPages + workers - 1) / workers;
+        log.debug("PdfPageParser: estrazione parallela su {} worker ({} pagine ciascuno)", workers, pagesPerWorker);
 
-            for (int p = 1; p <= totalPages; p++) {
-                stripper.setStartPage(p);
-                stripper.setEndPage(p);
-                int start = sb.length();
-                sb.append(stripper.getText(doc));
-                offsets.add(new int[]{p, start, sb.length()});
+        List<Future<List<String>>> futures = new ArrayList<>(workers);
+        for (int first = 1; first <= totalPages; first += pagesPerWorker) {
+            int from = first;
+            int to = Math.min(first + pagesPerWorker - 1, totalPages);
+            futures.add(options.executor().submit(() -> {
+                try (PDDocument doc = source.open(memory)) {
+                    return extractRange(doc, from, to);
+                }
+            }));
+        }
+
+        List<String> pages = new ArrayList<>(totalPages);
+        try {
+            for (Future<List<String>> f : futures) {
+                pages.addAll(f.get());
             }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Estrazione PDF interrotta");
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("Errore estrazione testo PDF", e.getCause());
+        }
+        return pages;
+    }
+
+    /** Estrae il testo delle pagine [from, to] (1-based, estremi inclusi), una stringa per pagina. */
+    private static List<String> extractRange(PDDocument doc, int from, int to) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        List<String> pages = new ArrayList<>(to - from + 1);
+        for (int p = from; p <= to; p++) {
+            stripper.setStartPage(p);
+            stripper.setEndPage(p);
+            pages.add(stripper.getText(doc));
+        }
+        return pages;
+    }
 
-            return new PagedText(sb.toString(), offsets);
+    private static PagedText assemble(List<String> pages) {
+        StringBuilder sb = new StringBuilder();
+        List<int[]> offsets = new ArrayList<>(pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            int start = sb.length();
+            sb.append(pages.get(i));
+            offsets.add(new int[]{i + 1, start, sb.length()});
         }
+        return new PagedText(sb.toString(), offsets);
     }
 }
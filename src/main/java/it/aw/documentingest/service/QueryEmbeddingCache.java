@@ -0,0 +1,160 @@
+package it.aw.documentingest.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import it.aw.documentingest.model.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Cache LRU degli embedding delle query di ricerca.
+ * <p>
+ * La chiave è il testo della query normalizzato ({@link #normalize(String)}): spazi
+ * iniziali/finali rimossi, sequenze di spazi ridotte a uno, minuscolo. Il modello
+ * AllMiniLM è uncased, quindi la normalizzazione non cambia l'embedding calcolato.
+ * <p>
+ * Limiti: numero massimo di voci e occupazione stimata in heap; le voci meno usate
+ * di recente vengono rimosse per prime. Con un TTL positivo le voci scadono anche
+ * per età. Con {@code search.query-cache.max-entries=0} la cache è disattivata.
+ */
+@Component
+public class QueryEmbeddingCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** Overhead stimato di una voce (nodo LinkedHashMap, oggetti Entry/Embedding, header array). */
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    @Value("${search.query-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${search.query-cache.max-size:16MB}")
+    private DataSize maxSize;
+
+    /** Durata massima di una voce; 0 = nessuna scadenza. */
+    @Value("${search.query-cache.ttl:0s}")
+    private Duration ttl;
+
+    private record Entry(Embedding embedding, long createdAtNanos, long weight) {}
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalWeight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Normalizza il testo della query per l'uso come chiave (e come testo da codificare). */
+    public static String normalize(String query) {
+        return WHITESPACE.matcher(query.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Restituisce l'embedding della query normalizzata, calcolandolo con {@code loader}
+     * in caso di miss. Il calcolo avviene fuori dal lock: due miss concorrenti sulla
+     * stessa chiave possono calcolare l'embedding due volte, con lo stesso risultato.
+     */
+    public Embedding getOrCompute(String normalizedQuery, Function<String, Embedding> loader) {
+        if (maxEntries <= 0) {
+            misses.incrementAndGet();
+            return loader.apply(normalizedQuery);
+        }
+        Embedding cached = get(normalizedQuery);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        Embedding computed = loader.apply(normalizedQuery);
+        put(normalizedQuery, computed);
+        return computed;
+    }
+
+    /**
+     * Variante di {@link #getOrCompute} per più query: gli embedding mancanti vengono calcolati
+     * con una sola invocazione di {@code loader}, che riceve le query distinte non in cache e deve
+     * restituire un embedding per ciascuna, nello stesso ordine.
+     *
+     * @return embedding per ogni query distinta di {@code normalizedQueries}
+     */
+    public Map<String, Embedding> getOrComputeAll(Collection<String> normalizedQueries,
+                                                  Function<List<String>, List<Embedding>> loader) {
+        Map<String, Embedding> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String q : new LinkedHashSet<>(normalizedQueries)) {
+            Embedding cached = maxEntries > 0 ? get(q) : null;
+            if (cached != null) {
+                hits.incrementAndGet();
+                result.put(q, cached);
+            } else {
+                misses.incrementAndGet();
+                missing.add(q);
+            }
+        }
+        if (missing.isEmpty()) return result;
+        List<Embedding> computed = loader.apply(missing);
+        for (int i = 0; i < missing.size(); i++) {
+            result.put(missing.get(i), computed.get(i));
+            if (maxEntries > 0) put(missing.get(i), computed.get(i));
+        }
+        return result;
+    }
+
+    /** Restituisce l'embedding in cache senza aggiornare i contatori, oppure null. */
+    private synchronized Embedding get(String key) {
+        Entry e = entries.get(key);
+        if (e == null) return null;
+        if (isExpired(e, System.nanoTime())) {
+            entries.remove(key);
+            totalWeight -= e.weight();
+            evictions.incrementAndGet();
+            return null;
+        }
+        return e.embedding();
+    }
+
+    private synchronized void put(String key, Embedding embedding) {
+        long weight = ENTRY_OVERHEAD_BYTES + 2L * key.length() + 4L * embedding.vector().length;
+        Entry previous = entries.put(key, new Entry(embedding, System.nanoTime(), weight));
+        if (previous != null) totalWeight -= previous.weight();
+        totalWeight += weight;
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        long maxBytes = maxSize.toBytes();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext() && (entries.size() > maxEntries || totalWeight > maxBytes)) {
+            totalWeight -= it.next().getValue().weight();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private boolean isExpired(Entry e, long nowNanos) {
+        return !ttl.isZero() && nowNanos - e.createdAtNanos() > ttl.toNanos();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits.get(), misses.get(), evictions.get(), entries.size(), totalWeight);
+    }
+}
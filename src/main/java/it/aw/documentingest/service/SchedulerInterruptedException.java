@@ -0,0 +1,12 @@
+package it.aw.documentingest.service;
+
+/**
+ * Thread interrotto mentre attendeva un posto dal {@link FairScheduler}: la porzione non è stata
+ * eseguita e il flag di interruzione resta impostato. Il controller risponde 503.
+ */
+public class SchedulerInterruptedException extends RuntimeException {
+
+    public SchedulerInterruptedException(String message) {
+        super(message);
+    }
+}
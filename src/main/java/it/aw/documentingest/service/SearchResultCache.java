@@ -0,0 +1,149 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.CacheStats;
+import it.aw.documentingest.model.SearchResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache LRU dei risultati di ricerca, con chiave {@code (query normalizzata, projectId, limit)}.
+ * <p>
+ * Invalidazione precisa: ogni progetto ha un contatore di generazione, incrementato da
+ * IngestionService a ogni ingest, re-ingest o delete su quel progetto; le ricerche globali
+ * (senza projectId) usano un contatore unico incrementato a ogni modifica. Un risultato
+ * viene memorizzato solo se la generazione del suo scope non è cambiata durante la ricerca,
+ * e all'invalidazione le voci dello scope vengono rimosse: la cache non restituisce mai
+ * risultati precedenti all'ultima modifica committata.
+ * <p>
+ * Con {@code search.result-cache.max-entries=0} la cache è disattivata.
+ */
+@Component
+public class SearchResultCache {
+
+    /** Overhead stimato di una voce (nodo LinkedHashMap, chiave, lista) e di ogni SearchResult. */
+    private static final long ENTRY_OVERHEAD_BYTES = 160;
+    private static final long RESULT_OVERHEAD_BYTES = 96;
+
+    @Value("${search.result-cache.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${search.result-cache.max-size:32MB}")
+    private DataSize maxSize;
+
+    /** projectId null = ricerca globale. */
+    private record Key(String query, String projectId, int limit) {}
+
+    private record Entry(List<SearchResult> results, long weight) {}
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalWeight;
+
+    private final Map<String, AtomicLong> projectGenerations = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Restituisce i risultati in cache per la ricerca indicata, oppure li calcola con
+     * {@code search} e li memorizza se nel frattempo lo scope non è stato invalidato.
+     *
+     * @param projectId progetto della ricerca, null per le ricerche globali
+     */
+    public List<SearchResult> getOrCompute(String normalizedQuery, String projectId, int limit,
+                                           Supplier<List<SearchResult>> search) {
+        if (maxEntries <= 0) {
+            misses.incrementAndGet();
+            return search.get();
+        }
+        Key key = new Key(normalizedQuery, projectId, limit);
+        List<SearchResult> cached = get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        long generation = generationOf(projectId);
+        List<SearchResult> results = List.copyOf(search.get());
+        put(key, results, generation);
+        return results;
+    }
+
+    /**
+     * Risultati in cache per la ricerca indicata, o null. Un'assenza non viene contata come miss:
+     * il chiamante calcola poi i risultati con {@link #getOrCompute}.
+     */
+    public List<SearchResult> find(String normalizedQuery, String projectId, int limit) {
+        if (maxEntries <= 0) return null;
+        List<SearchResult> cached = get(new Key(normalizedQuery, projectId, limit));
+        if (cached != null) hits.incrementAndGet();
+        return cached;
+    }
+
+    /**
+     * Invalida le ricerche sul progetto indicato e tutte le ricerche globali.
+     * Da invocare dopo che la modifica è visibile nell'embedding store e nel registry.
+     */
+    public synchronized void invalidateProject(String projectId) {
+        projectGenerations.computeIfAbsent(projectId, p -> new AtomicLong()).incrementAndGet();
+        globalGeneration.incrementAndGet();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            String scope = e.getKey().projectId();
+            if (scope == null || scope.equals(projectId)) {
+                totalWeight -= e.getValue().weight();
+                it.remove();
+            }
+        }
+    }
+
+    private long generationOf(String projectId) {
+        if (projectId == null) return globalGeneration.get();
+        return projectGenerations.computeIfAbsent(projectId, p -> new AtomicLong()).get();
+    }
+
+    private synchronized List<SearchResult> get(Key key) {
+        Entry e = entries.get(key);
+        return e != null ? e.results() : null;
+    }
+
+    private synchronized void put(Key key, List<SearchResult> results, long generation) {
+        if (generationOf(key.projectId()) != generation) return; // invalidata durante la ricerca
+        long weight = ENTRY_OVERHEAD_BYTES + 2L * key.query().length();
+        for (SearchResult r : results) {
+            weight += RESULT_OVERHEAD_BYTES + 2L * (length(r.text()) + length(r.filename())
+                    + length(r.documentId()) + length(r.sectionPath()) + length(r.sectionTitle()));
+        }
+        Entry previous = entries.put(key, new Entry(results, weight));
+        if (previous != null) totalWeight -= previous.weight();
+        totalWeight += weight;
+
+        long maxBytes = maxSize.toBytes();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext() && (entries.size() > maxEntries || totalWeight > maxBytes)) {
+            totalWeight -= it.next().getValue().weight();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static int length(String s) {
+        return Objects.requireNonNullElse(s, "").length();
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits.get(), misses.get(), evictions.get(), entries.size(), totalWeight);
+    }
+}
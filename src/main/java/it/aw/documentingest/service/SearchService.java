@@ -7,10 +7,31 @@ import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import it.aw.documentingest.model.ExplainedSearch;
+import it.aw.documentingest.model.SearchExplain;
+import it.aw.documentingest.embedding.BatchingEmbeddingModel;
+import it.aw.documentingest.model.SearchQuery;
 import it.aw.documentingest.model.SearchResult;
+import it.aw.documentingest.model.SearchStats;
+import it.aw.documentingest.registry.DocumentRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -18,30 +39,236 @@ import java.util.stream.Collectors;
  * <p>
  * I chunk orfani non esistono più: la cancellazione è fisica, quindi non è necessario
  * alcun filtraggio post-query sul registry.
+ * <p>
+ * L'embedding della query è memorizzato in {@link QueryEmbeddingCache}: una query
+ * ripetuta (a meno di maiuscole e spazi) non richiede una nuova inferenza del modello.
+ * L'intera lista di risultati è memorizzata in {@link SearchResultCache}, invalidata da
+ * IngestionService a ogni modifica del progetto interessato.
+ * <p>
+ * Ogni ricerca misura i tempi delle fasi (embedding, store, mappatura) in un {@link SearchExplain},
+ * restituito al chiamante con {@link #explain} e scritto nel log quando la latenza supera
+ * {@code search.slow-query.threshold}. Il filtro projectId è passato allo store, che lo applica
+ * nella propria query: i vettori confrontati sono quelli dei chunk del progetto (o tutti, senza
+ * projectId), contati dalle statistiche del registry.
+ * <p>
+ * {@link #searchBatch} esegue più ricerche insieme: gli embedding delle query mancanti dalla cache
+ * sono calcolati con un solo {@code embedAll} (con priorità QUERY se il modello è un
+ * BatchingEmbeddingModel) e le ricerche sullo store procedono in parallelo su un pool dedicato
+ * di {@code search.batch.workers} thread.
+ * <p>
+ * Le ricerche passano da {@link FairScheduler#search}: non attendono in coda e, mentre sono in
+ * corso, le porzioni di embedding e scrittura delle ingestioni vengono ridotte.
  */
 @Service
 public class SearchService {
 
+    private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+
+    /** Latenza oltre la quale la ricerca viene registrata nel log delle query lente (0 = disattivato). */
+    @Value("${search.slow-query.threshold:500ms}")
+    private Duration slowQueryThreshold;
+
+    @Value("${search.batch.workers:4}")
+    private int batchWorkers;
+
+    /** Numero massimo di ricerche in una richiesta batch. */
+    @Value("${search.batch.max-queries:50}")
+    private int batchMaxQueries;
+
     private final EmbeddingModel embeddingModel;
     private final EmbeddingStore<TextSegment> embeddingStore;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final SearchResultCache resultCache;
+    private final DocumentRegistry registry;
+    private final FairScheduler scheduler;
+    private ThreadPoolExecutor batchPool;
+
+    /** Misure raccolte durante una singola ricerca. */
+    private static final class Trace {
+        boolean resultComputed;
+        boolean embeddingComputed;
+        long embedNanos;
+        long storeNanos;
+        long mapNanos;
+        long indexedChunks;
+    }
 
     public SearchService(EmbeddingModel embeddingModel,
-                         EmbeddingStore<TextSegment> embeddingStore) {
+                         EmbeddingStore<TextSegment> embeddingStore,
+                         QueryEmbeddingCache queryEmbeddingCache,
+                         SearchResultCache resultCache,
+                         DocumentRegistry registry,
+                         FairScheduler scheduler) {
         this.embeddingModel = embeddingModel;
         this.embeddingStore = embeddingStore;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.resultCache = resultCache;
+        this.registry = registry;
+        this.scheduler = scheduler;
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        // A coda piena la ricerca viene eseguita dal thread della richiesta
+        batchPool = new ThreadPoolExecutor(batchWorkers, batchWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(batchMaxQueries, 1) * 4),
+                r -> {
+                    Thread t = new Thread(r, "search-batch-" + threadCounter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batchPool.shutdownNow();
     }
 
     public List<SearchResult> search(String query, int limit, String projectId) {
-        Embedding queryEmbedding = embeddingModel.embed(query).content();
+        return explain(query, limit, projectId).results();
+    }
+
+    /** Come {@link #search}, restituendo anche tempi per fase, chunk indicizzati e hit delle cache. */
+    public ExplainedSearch explain(String query, int limit, String projectId) {
+        long start = System.nanoTime();
+        String normalized = QueryEmbeddingCache.normalize(query);
+        String scope = (projectId != null && !projectId.isBlank()) ? projectId : null;
+        Trace trace = new Trace();
+        List<SearchResult> results = scheduler.search(() -> resultCache.getOrCompute(normalized, scope, limit, () -> {
+            trace.resultComputed = true;
+            return doSearch(normalized, limit, scope, trace);
+        }));
+        long totalNanos = System.nanoTime() - start;
+
+        SearchExplain explain = new SearchExplain(
+                normalized, scope, limit,
+                !trace.resultComputed,
+                trace.resultComputed ? !trace.embeddingComputed : null,
+                millis(trace.embedNanos), millis(trace.storeNanos), millis(trace.mapNanos), millis(totalNanos),
+                trace.indexedChunks,
+                scope != null ? "projectId = " + scope : null,
+                results.size());
+        if (!slowQueryThreshold.isZero() && totalNanos >= slowQueryThreshold.toNanos()) {
+            log.warn("Ricerca lenta: {} ms (embed {} ms, store {} ms, map {} ms) — q=\"{}\", projectId={}, limit={}, "
+                            + "chunk indicizzati={}, filtro={}, cache risultati={}, cache embedding={}, risultati={}",
+                    explain.totalMs(), explain.embedMs(), explain.storeMs(), explain.mapMs(),
+                    explain.query(), explain.projectId(), explain.limit(), explain.indexedChunks(),
+                    explain.storeFilter(), explain.resultCacheHit() ? "hit" : "miss",
+                    explain.queryEmbeddingCacheHit() == null ? "-" : explain.queryEmbeddingCacheHit() ? "hit" : "miss",
+                    explain.returned());
+        }
+        return new ExplainedSearch(results, explain);
+    }
+
+    /**
+     * Esegue più ricerche in una volta: le query già in {@link SearchResultCache} sono servite
+     * subito, per le altre un solo calcolo degli embedding e ricerche sullo store in parallelo.
+     * I risultati sono nell'ordine delle query.
+     *
+     * @throws IllegalArgumentException se la lista è null o vuota, le query sono più di
+     *                                  {@code search.batch.max-queries}, una query è null o vuota
+     *                                  o un limit non è positivo
+     */
+    public List<List<SearchResult>> searchBatch(List<SearchQuery> queries) {
+        if (queries == null || queries.isEmpty()) {
+            throw new IllegalArgumentException("Nessuna ricerca nel batch");
+        }
+        if (queries.size() > batchMaxQueries) {
+            throw new IllegalArgumentException("Troppe ricerche nel batch (massimo " + batchMaxQueries + ")");
+        }
+        long start = System.nanoTime();
+        List<String> normalized = new ArrayList<>(queries.size());
+        for (SearchQuery query : queries) {
+            if (query == null || query.q() == null || query.q().isBlank()) {
+                throw new IllegalArgumentException("Query vuota nel batch");
+            }
+            if (query.limitOrDefault() < 1) {
+                throw new IllegalArgumentException("limit deve essere >= 1 (ricevuto: " + query.limit() + ")");
+            }
+            normalized.add(QueryEmbeddingCache.normalize(query.q()));
+        }
+        List<List<SearchResult>> results = scheduler.search(() -> runBatch(queries, normalized));
+        long totalNanos = System.nanoTime() - start;
+        if (!slowQueryThreshold.isZero() && totalNanos >= slowQueryThreshold.toNanos()) {
+            log.warn("Ricerca batch lenta: {} ms per {} query", millis(totalNanos), queries.size());
+        }
+        return results;
+    }
+
+    private List<List<SearchResult>> runBatch(List<SearchQuery> queries, List<String> normalized) {
+        List<List<SearchResult>> results = new ArrayList<>(Collections.nCopies(queries.size(), null));
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            List<SearchResult> cached = resultCache.find(normalized.get(i), scopeOf(queries.get(i)),
+                    queries.get(i).limitOrDefault());
+            if (cached != null) results.set(i, cached);
+            else missing.add(i);
+        }
+        if (missing.isEmpty()) return results;
+
+        // Embedding delle sole query non in cache
+        List<String> toEmbed = new ArrayList<>(missing.size());
+        for (int i : missing) toEmbed.add(normalized.get(i));
+        Map<String, Embedding> embeddings = queryEmbeddingCache.getOrComputeAll(toEmbed, this::embedQueries);
+
+        List<CompletableFuture<List<SearchResult>>> futures = new ArrayList<>(missing.size());
+        for (int i : missing) {
+            String q = normalized.get(i);
+            String scope = scopeOf(queries.get(i));
+            int limit = queries.get(i).limitOrDefault();
+            futures.add(CompletableFuture.supplyAsync(() -> resultCache.getOrCompute(q, scope, limit,
+                    () -> searchStore(embeddings.get(q), limit, scope, new Trace())), batchPool));
+        }
+        try {
+            for (int k = 0; k < missing.size(); k++) results.set(missing.get(k), futures.get(k).join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+        return results;
+    }
+
+    private static String scopeOf(SearchQuery query) {
+        String projectId = query.projectId();
+        return (projectId != null && !projectId.isBlank()) ? projectId : null;
+    }
+
+    /** Embedding di più query con una sola chiamata al modello. */
+    private List<Embedding> embedQueries(List<String> queries) {
+        List<TextSegment> segments = new ArrayList<>(queries.size());
+        for (String q : queries) segments.add(TextSegment.from(q));
+        return embeddingModel instanceof BatchingEmbeddingModel batching
+                ? batching.embedAll(segments, BatchingEmbeddingModel.Priority.QUERY).content()
+                : embeddingModel.embedAll(segments).content();
+    }
+
+    private List<SearchResult> doSearch(String normalizedQuery, int limit, String projectId, Trace trace) {
+        long t0 = System.nanoTime();
+        Embedding queryEmbedding = queryEmbeddingCache.getOrCompute(normalizedQuery, q -> {
+            trace.embeddingComputed = true;
+            return embeddingModel.embed(q).content();
+        });
+        trace.embedNanos = System.nanoTime() - t0;
+        return searchStore(queryEmbedding, limit, projectId, trace);
+    }
+
+    /** Ricerca sullo store a partire dall'embedding della query e conversione dei match. */
+    private List<SearchResult> searchStore(Embedding queryEmbedding, int limit, String projectId, Trace trace) {
+        long t1 = System.nanoTime();
+        trace.indexedChunks = projectId != null ? registry.projectStats(projectId).chunks() : registry.totalChunks();
         EmbeddingSearchRequest.EmbeddingSearchRequestBuilder builder = EmbeddingSearchRequest.builder()
                 .queryEmbedding(queryEmbedding)
                 .maxResults(limit);
-        if (projectId != null && !projectId.isBlank()) {
+        if (projectId != null) {
             builder.filter(new IsEqualTo("projectId", projectId));
         }
         List<EmbeddingMatch<TextSegment>> candidates = embeddingStore.search(builder.build()).matches();
+        long t2 = System.nanoTime();
+        trace.storeNanos = t2 - t1;
 
-        return candidates.stream()
+        List<SearchResult> results = candidates.stream()
                 .map(m -> {
                     var meta = m.embedded().metadata();
                     String  sectionPath  = meta.getString("section.path");
@@ -62,6 +289,15 @@ public class SearchService {
                     );
                 })
                 .collect(Collectors.toList());
+        trace.mapNanos = System.nanoTime() - t2;
+        return results;
     }
 
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    public SearchStats stats() {
+        return new SearchStats(queryEmbeddingCache.stats(), resultCache.stats());
+    }
 }
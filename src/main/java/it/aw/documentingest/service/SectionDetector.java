@@ -1,9 +1,6 @@
 package it.aw.documentingest.service;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Rileva heading strutturali nel testo di un documento usando pattern espliciti
@@ -17,7 +14,8 @@ import java.util.regex.Pattern;
  *   <li>Livello 3: "Comma N", "c. N", "1.2.3 Titolo"</li>
  * </ul>
  *
- * Il rilevamento opera riga per riga sul testo completo del documento.
+ * Il rilevamento opera riga per riga sul testo completo del documento, in un'unica
+ * passata di {@link HeadingScanner} con i profili di {@link HeadingProfiles}.
  * L'offset di ogni heading corrisponde alla posizione del primo carattere
  * della riga nell'intero testo.
  */
@@ -29,26 +27,9 @@ public class SectionDetector {
      */
     public record SectionBoundary(int offset, int level, String title) {}
 
-    // Livello 1
-    private static final Pattern L1_KEYWORD = Pattern.compile(
-            "^\\s*(Capitolo|CAPITOLO)\\s+\\d+.*",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern L1_NUMBERED = Pattern.compile(
-            "^\\s*(\\d+)\\.\\s+[A-ZÀÈÉÌÒÙ].*");
-
-    // Livello 2
-    private static final Pattern L2_KEYWORD = Pattern.compile(
-            "^\\s*(Art\\.|Articolo|Sezione)\\s+\\d+.*",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern L2_NUMBERED = Pattern.compile(
-            "^\\s*(\\d+\\.\\d+)\\s+[A-ZÀÈÉÌÒÙ].*");
-
-    // Livello 3
-    private static final Pattern L3_KEYWORD = Pattern.compile(
-            "^\\s*(Comma|c\\.)\\s+\\d+.*",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern L3_NUMBERED = Pattern.compile(
-            "^\\s*(\\d+\\.\\d+\\.\\d+)\\s+[A-ZÀÈÉÌÒÙ].*");
+    /** Profili usati da {@link #detect(String)}: normativa italiana e numerazioni. */
+    private static final HeadingScanner DEFAULT_SCANNER =
+            HeadingScanner.of(HeadingProfiles.NUMBERED, HeadingProfiles.ITALIAN_LEGAL);
 
     private SectionDetector() {}
 
@@ -60,29 +41,14 @@ public class SectionDetector {
      * @return lista di {@link SectionBoundary}, vuota se nessun heading trovato
      */
     public static List<SectionBoundary> detect(String text) {
-        List<SectionBoundary> boundaries = new ArrayList<>();
-        int offset = 0;
-        for (String line : text.split("\n", -1)) {
-            String trimmed = line.trim();
-            if (!trimmed.isEmpty()) {
-                int level = matchLevel(line);
-                if (level > 0) {
-                    boundaries.add(new SectionBoundary(offset, level, trimmed));
-                }
-            }
-            offset += line.length() + 1; // +1 per il '\n'
-        }
-        return boundaries;
+        return DEFAULT_SCANNER.scan(text);
     }
 
     /**
-     * Determina il livello gerarchico di una riga, oppure 0 se non è un heading.
+     * Come {@link #detect(String)}, con un insieme di profili diverso da quello predefinito.
      */
-    private static int matchLevel(String line) {
-        if (L3_NUMBERED.matcher(line).matches() || L3_KEYWORD.matcher(line).matches()) return 3;
-        if (L2_NUMBERED.matcher(line).matches() || L2_KEYWORD.matcher(line).matches()) return 2;
-        if (L1_NUMBERED.matcher(line).matches() || L1_KEYWORD.matcher(line).matches()) return 1;
-        return 0;
+    public static List<SectionBoundary> detect(String text, HeadingScanner scanner) {
+        return scanner.scan(text);
     }
 
     /**
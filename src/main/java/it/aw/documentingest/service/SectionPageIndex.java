@@ -0,0 +1,132 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.service.PdfPageParser.PagedText;
+import it.aw.documentingest.service.SectionDetector.SectionBoundary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Indice di posizione di un documento: per ogni offset del testo restituisce il contesto
+ * di sezione (L1/L2/L3) attivo e, per ogni intervallo, il page range coperto.
+ * <p>
+ * Costruito una volta per documento a partire dagli heading di {@link SectionDetector} e dalla
+ * mappa pagine di {@link PagedText}: gli offset sono in array {@code int[]} ordinati e il contesto
+ * di ogni heading è risolto in anticipo, quindi ogni interrogazione è una ricerca binaria.
+ * I risultati coincidono con {@link SectionDetector#hierarchyAt(int, List)} e
+ * {@link PagedText#pageRangeFor(int, int)}, che scandiscono le liste a ogni chiamata.
+ */
+public final class SectionPageIndex {
+
+    /**
+     * Contesto gerarchico attivo in un punto del testo. I titoli assenti sono null;
+     * path e title sono stringhe vuote e level è 0 se nessun heading precede il punto.
+     */
+    public record SectionContext(String l1, String l2, String l3, String path, String title, int level) {}
+
+    private static final SectionContext NO_SECTION = new SectionContext(null, null, null, "", "", 0);
+
+    private final int[] boundaryOffsets;
+    private final SectionContext[] contexts;  // contesto attivo a partire dal boundary i
+
+    private final int[] pageNumbers;          // null per documenti senza informazione di pagina
+    private final int[] pageStarts;
+    private final int[] pageEnds;
+
+    private SectionPageIndex(int[] boundaryOffsets, SectionContext[] contexts,
+                             int[] pageNumbers, int[] pageStarts, int[] pageEnds) {
+        this.boundaryOffsets = boundaryOffsets;
+        this.contexts = contexts;
+        this.pageNumbers = pageNumbers;
+        this.pageStarts = pageStarts;
+        this.pageEnds = pageEnds;
+    }
+
+    /**
+     * Costruisce l'indice.
+     *
+     * @param boundaries heading in ordine di offset crescente, come restituiti da SectionDetector
+     * @param pagedText  mappa pagine del PDF, oppure null per file di testo
+     */
+    public static SectionPageIndex build(List<SectionBoundary> boundaries, PagedText pagedText) {
+        int n = boundaries.size();
+        int[] offsets = new int[n];
+        SectionContext[] contexts = new SectionContext[n];
+        String[] h = new String[3];
+        for (int i = 0; i < n; i++) {
+            SectionBoundary b = boundaries.get(i);
+            offsets[i] = b.offset();
+            int idx = b.level() - 1;
+            if (idx >= 0 && idx < 3) h[idx] = b.title();
+            contexts[i] = (i > 0 && (idx < 0 || idx >= 3)) ? contexts[i - 1] : contextOf(h[0], h[1], h[2]);
+        }
+
+        int[] numbers = null, starts = null, ends = null;
+        if (pagedText != null) {
+            List<int[]> pages = pagedText.pageOffsets();
+            numbers = new int[pages.size()];
+            starts = new int[pages.size()];
+            ends = new int[pages.size()];
+            for (int i = 0; i < pages.size(); i++) {
+                int[] po = pages.get(i);
+                numbers[i] = po[0];
+                starts[i] = po[1];
+                ends[i] = po[2];
+            }
+        }
+        return new SectionPageIndex(offsets, contexts, numbers, starts, ends);
+    }
+
+    /** Contesto di sezione attivo all'offset dato (l'ultimo heading di ogni livello che lo precede). */
+    public SectionContext sectionAt(int offset) {
+        int i = lastAtOrBefore(boundaryOffsets, offset);
+        return i >= 0 ? contexts[i] : NO_SECTION;
+    }
+
+    /**
+     * Page range coperto dall'intervallo {@code [start, end)}.
+     *
+     * @return int[]{pageStart, pageEnd} (1-based), oppure null se l'intervallo non tocca
+     *         nessuna pagina nota o il documento non ha informazione di pagina
+     */
+    public int[] pageRangeFor(int start, int end) {
+        if (pageNumbers == null) return null;
+        // prima pagina che termina dopo start (pageEnds non decrescente)
+        int first = firstGreaterThan(pageEnds, start);
+        // prima pagina, da first in poi, che inizia a end o dopo (pageStarts non decrescente)
+        int stop = Math.max(first, firstGreaterThan(pageStarts, end - 1));
+        if (first >= stop) return null;
+        return new int[]{pageNumbers[first], pageNumbers[stop - 1]};
+    }
+
+    /** Numero di heading indicizzati. */
+    public int boundaryCount() {
+        return boundaryOffsets.length;
+    }
+
+    private static SectionContext contextOf(String l1, String l2, String l3) {
+        List<String> parts = new ArrayList<>(3);
+        if (l1 != null) parts.add(l1);
+        if (l2 != null) parts.add(l2);
+        if (l3 != null) parts.add(l3);
+        int level = (l3 != null) ? 3 : (l2 != null) ? 2 : (l1 != null) ? 1 : 0;
+        String title = (l3 != null) ? l3 : (l2 != null) ? l2 : (l1 != null) ? l1 : "";
+        return new SectionContext(l1, l2, l3, String.join(" / ", parts), title, level);
+    }
+
+    /** Indice dell'ultimo elemento {@code <= value}, oppure -1. */
+    private static int lastAtOrBefore(int[] sorted, int value) {
+        return firstGreaterThan(sorted, value) - 1;
+    }
+
+    /** Indice del primo elemento {@code > value}, oppure {@code sorted.length}. */
+    private static int firstGreaterThan(int[] sorted, int value) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,386 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.ChunkingParams;
+import it.aw.documentingest.registry.WatchedFileIndex;
+import it.aw.documentingest.registry.WatchedFileIndex.Fingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Sorgente di ingestione lato server: indicizza i file di cartelle locali associate a un projectId
+ * ({@code ingest.watch.folders}, formato {@code projectId=percorso;projectId=percorso}).
+ * <p>
+ * Le modifiche vengono rilevate in due modi:
+ * <ul>
+ *   <li>un WatchService registrato su tutte le sottocartelle segnala creazioni, modifiche e
+ *       cancellazioni appena avvengono</li>
+ *   <li>una scansione completa all'avvio e ogni {@code ingest.watch.scan-interval} recupera gli
+ *       eventi persi (overflow, modifiche a servizio fermo)</li>
+ * </ul>
+ * Ogni file viene confrontato con la sua impronta in {@link WatchedFileIndex}: se dimensione e data
+ * di modifica coincidono non viene nemmeno letto, quindi la scansione di un albero invariato costa
+ * solo la visita delle cartelle. Se differiscono viene calcolato lo SHA-256 e, solo se cambia anche
+ * quello, il documento viene indicizzato (re-ingest differenziale se già noto). I file scomparsi
+ * dal disco vengono rimossi con {@link IngestionService#delete}.
+ * <p>
+ * Il documentId di un file nuovo è derivato da projectId e percorso: se il servizio si ferma tra
+ * l'ingestione e il salvataggio dell'impronta, la scansione successiva aggiorna lo stesso documento
+ * invece di crearne un duplicato. Un contenuto la cui ingestione fallisce viene registrato come
+ * fallito e riprovato solo quando il file cambia.
+ * <p>
+ * Il lavoro è eseguito da {@code ingest.watch.workers} thread con coda limitata: a coda piena il
+ * thread che ha rilevato la modifica esegue l'ingestione, rallentando la scansione.
+ */
+@Service
+public class WatchedFolderService {
+
+    private static final Logger log = LoggerFactory.getLogger(WatchedFolderService.class);
+
+    /** Cartelle sorvegliate: {@code projectId=percorso} separati da ';' (vuoto = disattivato). */
+    @Value("${ingest.watch.folders:}")
+    private String foldersConfig;
+
+    @Value("${ingest.watch.scan-interval:10m}")
+    private Duration scanInterval;
+
+    @Value("${ingest.watch.workers:2}")
+    private int workers;
+
+    @Value("${ingest.watch.queue-capacity:1000}")
+    private int queueCapacity;
+
+    /** Estensioni indicizzate (senza punto, minuscole). */
+    @Value("${ingest.watch.extensions:pdf,txt,md}")
+    private Set<String> extensions;
+
+    private final IngestionService ingestionService;
+    private final WatchedFileIndex index;
+
+    /** Cartella sorvegliata, con percorso assoluto normalizzato. */
+    private record Folder(String projectId, Path root) {}
+
+    private final List<Folder> folders = new ArrayList<>();
+    private final Map<WatchKey, Folder> watchKeys = new ConcurrentHashMap<>();
+    /** File con un'operazione già in coda o in corso: evita lavoro doppio tra eventi e scansioni. */
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+    private WatchService watchService;
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService scheduler;
+    private Thread watcher;
+
+    public WatchedFolderService(IngestionService ingestionService, WatchedFileIndex index) {
+        this.ingestionService = ingestionService;
+        this.index = index;
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        for (String mapping : foldersConfig.split(";")) {
+            if (mapping.isBlank()) continue;
+            int eq = mapping.indexOf('=');
+            if (eq <= 0 || eq == mapping.length() - 1) {
+                throw new IllegalArgumentException("ingest.watch.folders: voce non valida '" + mapping
+                        + "' (atteso projectId=percorso)");
+            }
+            Path root = Paths.get(mapping.substring(eq + 1).trim()).toAbsolutePath().normalize();
+            folders.add(new Folder(mapping.substring(0, eq).trim(), root));
+        }
+        if (folders.isEmpty()) return;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "watch-worker-" + threadCounter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Folder folder : folders) {
+            if (Files.isDirectory(folder.root())) registerTree(folder, folder.root());
+            else log.warn("Cartella sorvegliata inesistente: {} (projectId={})", folder.root(), folder.projectId());
+        }
+        watcher = new Thread(this::watchLoop, "folder-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "folder-scanner");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::scanAll, 0, scanInterval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Cartelle sorvegliate: {} — scansione ogni {}, {} worker", folders, scanInterval, workers);
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        if (folders.isEmpty()) return;
+        scheduler.shutdownNow();
+        watcher.interrupt();
+        watchService.close();
+        executor.shutdownNow();
+    }
+
+    // -------------------------------------------------------------------------
+    // Scansione periodica
+    // -------------------------------------------------------------------------
+
+    private void scanAll() {
+        for (Folder folder : folders) {
+            try {
+                scan(folder);
+            } catch (Exception e) {
+                log.error("Scansione fallita: {} (projectId={})", folder.root(), folder.projectId(), e);
+            }
+        }
+    }
+
+    /**
+     * Confronta l'albero su disco con le impronte salvate. I file non più presenti vengono rimossi,
+     * tranne quelli sotto percorsi non leggibili durante la visita: una cartella irraggiungibile
+     * non cancella i suoi documenti.
+     */
+    private void scan(Folder folder) throws IOException {
+        if (!Files.isDirectory(folder.root())) {
+            log.warn("Cartella sorvegliata non disponibile, scansione saltata: {}", folder.root());
+            return;
+        }
+        long start = System.nanoTime();
+        String separator = folder.root().getFileSystem().getSeparator();
+        Map<String, Fingerprint> known = index.findUnder(folder.root() + separator);
+        Set<String> seen = new HashSet<>(known.size() * 2);
+        List<String> unreadable = new ArrayList<>();
+        int[] changed = {0};
+        Files.walkFileTree(folder.root(), new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile() || !isIndexable(file)) return FileVisitResult.CONTINUE;
+                String key = file.toString();
+                seen.add(key);
+                Fingerprint f = known.get(key);
+                if (f == null || f.size() != attrs.size() || f.modifiedAt() != attrs.lastModifiedTime().toMillis()) {
+                    changed[0]++;
+                    submit(file, () -> update(folder, file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("Percorso non leggibile durante la scansione: {} — {}", file, e.getMessage());
+                unreadable.add(file.toString());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        int removed = 0;
+        for (Fingerprint f : known.values()) {
+            if (!seen.contains(f.path()) && !isUnder(f.path(), unreadable, separator)) {
+                removed++;
+                Path file = Paths.get(f.path());
+                submit(file, () -> remove(file));
+            }
+        }
+        log.info("Scansione {}: {} file, {} da verificare, {} rimossi ({} ms)", folder.root(), seen.size(),
+                changed[0], removed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // -------------------------------------------------------------------------
+    // WatchService
+    // -------------------------------------------------------------------------
+
+    private void registerTree(Folder folder, Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                watchKeys.put(d.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), folder);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Folder folder = watchKeys.get(key);
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (folder == null) break;
+                if (event.kind() == OVERFLOW) {
+                    log.warn("Eventi persi su {}: scansione completa anticipata", folder.root());
+                    scheduler.execute(this::scanAll);
+                    continue;
+                }
+                Path path = dir.resolve((Path) event.context());
+                try {
+                    onEvent(folder, event.kind(), path);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Evento {} su {} non gestito: {}", event.kind(), path, e.getMessage());
+                }
+            }
+            if (!key.reset()) watchKeys.remove(key);
+        }
+    }
+
+    private void onEvent(Folder folder, WatchEvent.Kind<?> kind, Path path) throws IOException {
+        if (kind == ENTRY_DELETE) {
+            // Una cartella cancellata viene riconciliata dalla scansione successiva
+            submit(path, () -> remove(path));
+        } else if (Files.isDirectory(path)) {
+            if (kind == ENTRY_CREATE) {
+                registerTree(folder, path);
+                try (var files = Files.walk(path)) {
+                    files.filter(Files::isRegularFile).filter(this::isIndexable)
+                            .forEach(f -> submit(f, () -> update(folder, f)));
+                }
+            }
+        } else if (isIndexable(path)) {
+            submit(path, () -> update(folder, path));
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Operazioni sui singoli file
+    // -------------------------------------------------------------------------
+
+    private void submit(Path file, Runnable work) {
+        if (!pending.add(file)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    work.run();
+                } finally {
+                    pending.remove(file);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(file);   // executor in chiusura
+        }
+    }
+
+    /** Indicizza il file se il contenuto è cambiato rispetto all'impronta salvata. */
+    private void update(Folder folder, Path file) {
+        try {
+            BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+            Fingerprint previous = index.find(file.toString()).orElse(null);
+            if (previous != null && previous.size() == before.size()
+                    && previous.modifiedAt() == before.lastModifiedTime().toMillis()) {
+                return;
+            }
+            String hash = sha256(file);
+            BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+            if (after.size() != before.size() || !after.lastModifiedTime().equals(before.lastModifiedTime())) {
+                log.debug("File in scrittura, verificato al prossimo evento: {}", file);
+                return;
+            }
+            String documentId = previous != null ? previous.documentId() : documentIdOf(folder, file);
+            boolean failed;
+            if (previous != null && previous.contentHash().equals(hash)) {
+                failed = previous.failed();   // solo data di modifica cambiata
+            } else {
+                failed = !ingest(folder, file, documentId);
+            }
+            index.put(new Fingerprint(file.toString(), folder.projectId(), after.size(),
+                    after.lastModifiedTime().toMillis(), hash, documentId, failed));
+        } catch (NoSuchFileException e) {
+            log.debug("File scomparso prima dell'ingestione: {}", file);
+        } catch (InterruptedIOException e) {
+            log.debug("Ingestione interrotta, file riprovato alla prossima scansione: {}", file);
+        } catch (Exception e) {
+            log.error("Verifica del file sorvegliato fallita: {}", file, e);
+        }
+    }
+
+    /**
+     * Indicizza il file con il documentId dato: re-ingest differenziale se il documento esiste,
+     * ingestione da zero altrimenti. Restituisce false se l'ingestione del contenuto è fallita.
+     *
+     * @throws InterruptedIOException se il servizio è in chiusura (il file verrà riprovato)
+     */
+    private boolean ingest(Folder folder, Path file, String documentId) throws InterruptedIOException {
+        String filename = folder.root().relativize(file).toString().replace('\\', '/');
+        String contentType = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf")
+                ? "application/pdf" : "text/plain";
+        try {
+            ingestionService.reingest(documentId, folder.projectId(), filename, contentType,
+                    new FileSystemResource(file), ChunkingParams.defaults(), IngestionProgress.NONE);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException(e.getMessage());
+            log.error("Ingestione del file sorvegliato fallita, riprovata alla prossima modifica: {}", file, e);
+            return false;
+        }
+        log.info("File sorvegliato indicizzato: {} (projectId={}, documentId={})",
+                file, folder.projectId(), documentId);
+        return true;
+    }
+
+    /** documentId stabile di un file sorvegliato, derivato da projectId e percorso. */
+    private static String documentIdOf(Folder folder, Path file) {
+        return UUID.nameUUIDFromBytes((folder.projectId() + '\n' + file).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /** Rimuove il documento di un file cancellato dal disco, se era indicizzato. */
+    private void remove(Path file) {
+        if (Files.exists(file)) return;   // ricreato nel frattempo
+        index.find(file.toString()).ifPresent(f -> {
+            ingestionService.delete(f.documentId());
+            index.remove(f.path());
+            log.info("File sorvegliato rimosso: {} (documentId={})", file, f.documentId());
+        });
+    }
+
+    private static boolean isUnder(String path, List<String> prefixes, String separator) {
+        for (String prefix : prefixes) {
+            if (path.equals(prefix) || path.startsWith(prefix + separator)) return true;
+        }
+        return false;
+    }
+
+    private boolean isIndexable(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return !name.startsWith(".") && dot > 0
+                && extensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int n; (n = in.read(buffer)) > 0; ) digest.update(buffer, 0, n);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
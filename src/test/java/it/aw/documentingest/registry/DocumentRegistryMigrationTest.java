@@ -0,0 +1,184 @@
+package it.aw.documentingest.registry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.aw.documentingest.model.ChunkInfo;
+import it.aw.documentingest.model.DocumentRecord;
+import it.aw.documentingest.registry.DocumentRegistry.StoredChunks;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Conversione dei registry con i chunk salvati come JSON nella tabella {@code chunks}. */
+class DocumentRegistryMigrationTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final List<ChunkInfo> PREVIEWS = List.of(
+            new ChunkInfo(0, "Capitolo 1", "Art. 1", null, "Art. 1", "Capitolo 1 / Art. 1", 2, 1, 1, "Oggetto del contratto"),
+            new ChunkInfo(1, "Capitolo 1", "Art. 1", null, "Art. 1", "Capitolo 1 / Art. 1", 2, 1, 2, "Durata"),
+            new ChunkInfo(0, "Capitolo 1", "Art. 2", null, "Art. 2", "Capitolo 1 / Art. 2", 2, 2, 2, "Recesso"));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void jsonChunksAreMovedToChunksTable() throws Exception {
+        Path db = dir.resolve("registry.duckdb");
+        try (Connection c = DriverManager.getConnection("jdbc:duckdb:" + db.toAbsolutePath())) {
+            createJsonSchema(c, true);
+            insertJsonDocument(c, "doc-1", List.of("id-1", "id-2", "id-3"), List.of("h-1", "h-2", "h-3"), PREVIEWS);
+            insertJsonDocument(c, "doc-empty", List.of(), List.of(), List.of());
+        }
+
+        DocumentRegistry registry = open(db);
+        try {
+            StoredChunks chunks = registry.findChunks("doc-1").orElseThrow();
+            assertEquals("doc-1.pdf", chunks.filename());
+            assertEquals(List.of("id-1", "id-2", "id-3"), chunks.chunkIds());
+            assertEquals(List.of("h-1", "h-2", "h-3"), chunks.chunkHashes());
+            assertEquals(PREVIEWS, chunks.chunks());
+
+            DocumentRecord record = registry.findById("doc-1").orElseThrow();
+            assertEquals(3, record.chunkCount());
+            assertEquals(4, record.cachedChunks());
+            assertEquals(PREVIEWS, record.chunkPreviews());
+            assertEquals(PREVIEWS.subList(1, 2), registry.findById("doc-1", 1, 1).orElseThrow().chunkPreviews());
+
+            assertTrue(registry.findChunks("doc-empty").orElseThrow().chunkIds().isEmpty());
+            assertEquals(2, registry.totalDocuments());
+            assertEquals(3L, registry.totalChunks());
+        } finally {
+            registry.close();
+        }
+
+        try (Connection c = DriverManager.getConnection("jdbc:duckdb:" + db.toAbsolutePath())) {
+            Set<String> columns = columnsOf(c);
+            assertFalse(columns.contains("chunk_ids"));
+            assertFalse(columns.contains("chunk_previews"));
+            assertTrue(columns.contains("text_bytes"));
+        }
+    }
+
+    /** Registry precedenti alle impronte: i chunk vengono convertiti con hash null. */
+    @Test
+    void registryWithoutHashesIsMigratedWithNullHashes() throws Exception {
+        Path db = dir.resolve("registry.duckdb");
+        try (Connection c = DriverManager.getConnection("jdbc:duckdb:" + db.toAbsolutePath())) {
+            createJsonSchema(c, false);
+            insertJsonDocument(c, "doc-1", List.of("id-1", "id-2", "id-3"), null, PREVIEWS);
+        }
+
+        DocumentRegistry registry = open(db);
+        try {
+            StoredChunks chunks = registry.findChunks("doc-1").orElseThrow();
+            assertEquals(List.of("id-1", "id-2", "id-3"), chunks.chunkIds());
+            assertEquals(Arrays.asList(null, null, null), chunks.chunkHashes());
+            assertEquals(PREVIEWS, chunks.chunks());
+        } finally {
+            registry.close();
+        }
+    }
+
+    /** Seconda apertura sullo stesso file: lo schema è già convertito e i dati restano. */
+    @Test
+    void migrationRunsOnce() throws Exception {
+        Path db = dir.resolve("registry.duckdb");
+        try (Connection c = DriverManager.getConnection("jdbc:duckdb:" + db.toAbsolutePath())) {
+            createJsonSchema(c, true);
+            insertJsonDocument(c, "doc-1", List.of("id-1", "id-2", "id-3"), List.of("h-1", "h-2", "h-3"), PREVIEWS);
+        }
+        open(db).close();
+
+        DocumentRegistry registry = open(db);
+        try {
+            assertEquals(PREVIEWS, registry.findChunks("doc-1").orElseThrow().chunks());
+            assertEquals(1, registry.totalDocuments());
+        } finally {
+            registry.close();
+        }
+    }
+
+    private static DocumentRegistry open(Path db) throws Exception {
+        DocumentRegistry registry = new DocumentRegistry(MAPPER);
+        ReflectionTestUtils.setField(registry, "dbPath", db.toString());
+        ReflectionTestUtils.setField(registry, "readPoolSize", 2);
+        ReflectionTestUtils.setField(registry, "acquireTimeout", Duration.ofSeconds(5));
+        registry.init();
+        return registry;
+    }
+
+    /** Schema con i chunk in colonne JSON, con o senza {@code chunk_hashes}. */
+    private static void createJsonSchema(Connection c, boolean withHashes) throws Exception {
+        String hashes = withHashes ? "chunk_hashes VARCHAR NOT NULL," : "";
+        try (Statement stmt = c.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE documents (
+                        document_id    VARCHAR   PRIMARY KEY,
+                        project_id     VARCHAR   NOT NULL,
+                        filename       VARCHAR   NOT NULL,
+                        ingested_at    TIMESTAMP NOT NULL,
+                        chunk_count    INTEGER   NOT NULL,
+                        chunk_size     INTEGER   NOT NULL,
+                        overlap        INTEGER   NOT NULL,
+                        section_count  INTEGER   NOT NULL DEFAULT 0,
+                        cached_chunks  INTEGER   NOT NULL DEFAULT 0,
+                        %s
+                        chunk_ids      VARCHAR   NOT NULL,
+                        chunk_previews VARCHAR   NOT NULL
+                    )
+                    """.formatted(hashes));
+        }
+    }
+
+    private static void insertJsonDocument(Connection c, String documentId, List<String> ids, List<String> hashes,
+                                           List<ChunkInfo> previews) throws Exception {
+        String columns = "document_id, project_id, filename, ingested_at, chunk_count, chunk_size, overlap, " +
+                         "section_count, cached_chunks, chunk_ids, chunk_previews";
+        String sql = hashes != null
+                ? "INSERT INTO documents (" + columns + ", chunk_hashes) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+                : "INSERT INTO documents (" + columns + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setString(1, documentId);
+            ps.setString(2, "prj-a");
+            ps.setString(3, documentId + ".pdf");
+            ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.of(2024, 5, 1, 10, 0)));
+            ps.setInt(5, ids.size());
+            ps.setInt(6, 500);
+            ps.setInt(7, 50);
+            ps.setInt(8, 2);
+            ps.setInt(9, ids.size() + 1);
+            ps.setString(10, MAPPER.writeValueAsString(ids));
+            ps.setString(11, MAPPER.writeValueAsString(previews));
+            if (hashes != null) ps.setString(12, MAPPER.writeValueAsString(hashes));
+            ps.executeUpdate();
+        }
+    }
+
+    private static Set<String> columnsOf(Connection c) throws Exception {
+        Set<String> columns = new HashSet<>();
+        try (Statement stmt = c.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT column_name FROM information_schema.columns WHERE table_name = 'documents'")) {
+            while (rs.next()) columns.add(rs.getString(1));
+        }
+        return columns;
+    }
+}
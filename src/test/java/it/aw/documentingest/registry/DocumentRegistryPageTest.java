@@ -0,0 +1,120 @@
+package it.aw.documentingest.registry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.aw.documentingest.model.DocumentPage;
+import it.aw.documentingest.model.DocumentRecord;
+import it.aw.documentingest.model.DocumentSummary;
+import it.aw.documentingest.registry.DocumentRegistry.PageCursor;
+import it.aw.documentingest.registry.DocumentRegistry.Registration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** Cursore e keyset pagination di {@link DocumentRegistry#findPage}. */
+class DocumentRegistryPageTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void cursorRoundTrip() {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2024, 5, 1, 10, 0, 0, 123_456_000), "doc|con|separatori");
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+        PageCursor wholeMinute = new PageCursor(T0, "doc-1");
+        assertEquals(wholeMinute, PageCursor.decode(wholeMinute.encode()));
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("non base64!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(encode("senza separatore")));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(encode("ieri|doc-1")));
+    }
+
+    @Test
+    void pagesCoverEveryDocumentOnce() throws Exception {
+        DocumentRegistry registry = open();
+        try {
+            List<Registration> registrations = new ArrayList<>();
+            // Timestamp ripetuti: a parità decide document_id
+            for (int i = 0; i < 23; i++) {
+                registrations.add(registration("doc-" + i, i % 2 == 0 ? "prj-a" : "prj-b", T0.plusMinutes(i / 3)));
+            }
+            registry.registerAll(registrations);
+
+            List<DocumentSummary> expected = registrations.stream()
+                    .map(r -> r.record().toSummary())
+                    .sorted(Comparator.comparing(DocumentSummary::ingestedAt)
+                            .thenComparing(DocumentSummary::documentId).reversed())
+                    .toList();
+            assertEquals(expected, readAll(registry, null, 5));
+            assertEquals(expected.stream().filter(d -> d.projectId().equals("prj-a")).toList(),
+                    readAll(registry, "prj-a", 4));
+
+            List<DocumentSummary> streamed = new ArrayList<>();
+            registry.forEachSummary(null, streamed::add);
+            assertEquals(expected, streamed);
+        } finally {
+            registry.close();
+        }
+    }
+
+    @Test
+    void lastPageHasNoCursor() throws Exception {
+        DocumentRegistry registry = open();
+        try {
+            registry.registerAll(List.of(registration("doc-1", "prj-a", T0), registration("doc-2", "prj-a", T0)));
+            DocumentPage page = registry.findPage("prj-a", null, 2);
+            assertEquals(2, page.items().size());
+            assertNull(page.nextCursor());
+            assertEquals(0, registry.findPage("prj-b", null, 2).items().size());
+        } finally {
+            registry.close();
+        }
+    }
+
+    private static List<DocumentSummary> readAll(DocumentRegistry registry, String projectId, int pageSize) {
+        List<DocumentSummary> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            DocumentPage page = registry.findPage(projectId, cursor, pageSize);
+            all.addAll(page.items());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    private static Registration registration(String documentId, String projectId, LocalDateTime ingestedAt) {
+        DocumentRecord record = new DocumentRecord(projectId, documentId, documentId + ".txt", ingestedAt,
+                0, 500, 50, 0, 0, 0, List.of());
+        return new Registration(record, List.of(), List.of());
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private DocumentRegistry open() throws Exception {
+        DocumentRegistry registry = new DocumentRegistry(new ObjectMapper());
+        ReflectionTestUtils.setField(registry, "dbPath", dir.resolve("registry.duckdb").toString());
+        ReflectionTestUtils.setField(registry, "readPoolSize", 2);
+        ReflectionTestUtils.setField(registry, "acquireTimeout", Duration.ofSeconds(5));
+        registry.init();
+        return registry;
+    }
+}
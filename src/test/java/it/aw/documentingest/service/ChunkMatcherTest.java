@@ -0,0 +1,105 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.ChunkInfo;
+import it.aw.documentingest.service.ChunkMatcher.Match;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Abbinamento dei chunk nel re-ingest differenziale. */
+class ChunkMatcherTest {
+
+    private static final List<String> OLD_IDS = List.of("id-a", "id-b", "id-c");
+    private static final List<String> OLD_HASHES = List.of("h-a", "h-b", "h-c");
+    private static final List<ChunkInfo> OLD_CHUNKS = List.of(
+            chunk("Art. 1", 1), chunk("Art. 1", 1), chunk("Art. 2", 2));
+
+    @Test
+    void unchangedDocumentKeepsEveryChunk() {
+        Match match = ChunkMatcher.match("a.pdf", OLD_IDS, OLD_HASHES, OLD_CHUNKS, "a.pdf", OLD_HASHES, OLD_CHUNKS);
+        assertEquals(OLD_IDS, match.chunkIds());
+        assertTrue(match.addedPositions().isEmpty());
+        assertTrue(match.removedIds().isEmpty());
+        assertEquals(0, match.moved());
+    }
+
+    @Test
+    void insertedAndRemovedChunks() {
+        Match match = ChunkMatcher.match("a.pdf", OLD_IDS, OLD_HASHES, OLD_CHUNKS, "a.pdf",
+                List.of("h-a", "h-new", "h-c"),
+                List.of(chunk("Art. 1", 1), chunk("Art. 1", 1), chunk("Art. 2", 2)));
+        assertEquals(Arrays.asList("id-a", null, "id-c"), match.chunkIds());
+        assertEquals(List.of(1), match.addedPositions());
+        assertEquals(List.of("id-b"), match.removedIds());
+        assertEquals(0, match.moved());
+    }
+
+    /** Stesso testo ma pagina diversa: la riga dello store va riscritta con i nuovi metadati. */
+    @Test
+    void chunkOnAnotherPageIsMoved() {
+        Match match = ChunkMatcher.match("a.pdf", OLD_IDS, OLD_HASHES, OLD_CHUNKS, "a.pdf", OLD_HASHES,
+                List.of(chunk("Art. 1", 1), chunk("Art. 1", 1), chunk("Art. 2", 3)));
+        assertEquals(Arrays.asList("id-a", "id-b", null), match.chunkIds());
+        assertEquals(List.of(2), match.addedPositions());
+        assertEquals(List.of("id-c"), match.removedIds());
+        assertEquals(1, match.moved());
+    }
+
+    @Test
+    void chunkInAnotherSectionIsMoved() {
+        Match match = ChunkMatcher.match("a.pdf", OLD_IDS, OLD_HASHES, OLD_CHUNKS, "a.pdf", OLD_HASHES,
+                List.of(chunk("Art. 1", 1), chunk("Art. 1 bis", 1), chunk("Art. 2", 2)));
+        assertEquals(List.of(1), match.addedPositions());
+        assertEquals(List.of("id-b"), match.removedIds());
+        assertEquals(1, match.moved());
+    }
+
+    /** Il filename è un metadato dello store: con un nuovo nome nessun chunk può essere riusato. */
+    @Test
+    void renamedFileMovesEveryChunk() {
+        Match match = ChunkMatcher.match("a.pdf", OLD_IDS, OLD_HASHES, OLD_CHUNKS, "b.pdf", OLD_HASHES, OLD_CHUNKS);
+        assertEquals(Arrays.asList(null, null, null), match.chunkIds());
+        assertEquals(List.of(0, 1, 2), match.addedPositions());
+        assertEquals(OLD_IDS, match.removedIds());
+        assertEquals(3, match.moved());
+    }
+
+    /** Ogni chunk precedente è riusato una sola volta, nell'ordine in cui compare. */
+    @Test
+    void duplicatedTextIsReusedOnce() {
+        List<String> oldIds = List.of("id-1", "id-2");
+        List<String> oldHashes = List.of("h-dup", "h-dup");
+        List<ChunkInfo> oldChunks = List.of(chunk("Art. 1", 1), chunk("Art. 1", 1));
+        Match match = ChunkMatcher.match("a.pdf", oldIds, oldHashes, oldChunks, "a.pdf",
+                List.of("h-dup", "h-dup", "h-dup"),
+                List.of(chunk("Art. 1", 1), chunk("Art. 1", 1), chunk("Art. 1", 1)));
+        assertEquals(Arrays.asList("id-1", "id-2", null), match.chunkIds());
+        assertEquals(List.of(2), match.addedPositions());
+        assertTrue(match.removedIds().isEmpty());
+
+        Match fewer = ChunkMatcher.match("a.pdf", oldIds, oldHashes, oldChunks, "a.pdf",
+                List.of("h-dup"), List.of(chunk("Art. 1", 1)));
+        assertEquals(List.of("id-1"), fewer.chunkIds());
+        assertEquals(List.of("id-2"), fewer.removedIds());
+        assertEquals(0, fewer.moved());
+    }
+
+    /** L'indice nella sezione cambia dopo ogni inserzione e non rende un chunk spostato. */
+    @Test
+    void sameLocationIgnoresIndexAndPreview() {
+        ChunkInfo a = new ChunkInfo(0, "Capitolo 1", "Art. 1", null, "Art. 1", "Capitolo 1 / Art. 1", 2, 4, 5, "uno");
+        ChunkInfo b = new ChunkInfo(3, "Capitolo 1", "Art. 1", null, "Art. 1", "Capitolo 1 / Art. 1", 2, 4, 5, "due");
+        assertTrue(ChunkMatcher.sameLocation(a, b));
+        ChunkInfo otherEnd = new ChunkInfo(0, "Capitolo 1", "Art. 1", null, "Art. 1", "Capitolo 1 / Art. 1", 2, 4, 6, "uno");
+        assertFalse(ChunkMatcher.sameLocation(a, otherEnd));
+    }
+
+    private static ChunkInfo chunk(String section, Integer page) {
+        return new ChunkInfo(0, section, null, null, section, section, 1, page, page, section);
+    }
+}
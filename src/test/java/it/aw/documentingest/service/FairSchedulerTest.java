@@ -0,0 +1,140 @@
+package it.aw.documentingest.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.aw.documentingest.model.ProjectQueueStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/** Ordine di weighted fair queueing, rimozione dei progetti inattivi e interruzione di {@link FairScheduler}. */
+class FairSchedulerTest {
+
+    /**
+     * Un solo posto, occupato mentre due progetti accodano quattro porzioni ciascuno: con peso 2
+     * il progetto A ottiene due porzioni per ognuna di B (tempi di fine 0.5, 1, 1.5, 2 contro 1, 2, 3, 4).
+     */
+    @Test
+    void slicesAreServedByWeightedFinishTime() throws Exception {
+        FairScheduler scheduler = newScheduler("prj-a=2");
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = start(() -> scheduler.run("prj-x", 1, () -> await(release)));
+        waitFor(() -> scheduler.stats().running() == 1);
+
+        List<Thread> threads = new ArrayList<>();
+        int queued = 0;
+        for (String projectId : List.of("prj-a", "prj-b")) {
+            for (int i = 0; i < 4; i++) {
+                threads.add(start(() -> scheduler.run(projectId, 1, () -> order.add(projectId))));
+                int expected = ++queued;
+                waitFor(() -> queuedSlices(scheduler) == expected);
+            }
+        }
+        release.countDown();
+        holder.join(5_000);
+        for (Thread t : threads) t.join(5_000);
+
+        assertEquals(List.of("prj-a", "prj-a", "prj-b", "prj-a", "prj-a", "prj-b", "prj-b", "prj-b"), order);
+    }
+
+    @Test
+    void idleProjectsAreForgotten() throws Exception {
+        FairScheduler scheduler = newScheduler("");
+        scheduler.run("prj-a", 10, () -> null);
+        assertTrue(scheduler.stats().projects().isEmpty());
+
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = start(() -> scheduler.run("prj-a", 1, () -> await(release)));
+        waitFor(() -> scheduler.stats().running() == 1);
+        Thread waiter = start(() -> scheduler.run("prj-b", 1, () -> null));
+        waitFor(() -> queuedSlices(scheduler) == 1);
+        assertEquals(2, scheduler.stats().projects().size());
+
+        release.countDown();
+        holder.join(5_000);
+        waiter.join(5_000);
+        assertTrue(scheduler.stats().projects().isEmpty());
+    }
+
+    @Test
+    void interruptWhileQueuedThrowsAndLeavesQueue() throws Exception {
+        FairScheduler scheduler = newScheduler("");
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = start(() -> scheduler.run("prj-a", 1, () -> await(release)));
+        waitFor(() -> scheduler.stats().running() == 1);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicReference<Boolean> interrupted = new AtomicReference<>();
+        Thread waiter = new Thread(() -> {
+            try {
+                scheduler.run("prj-b", 1, () -> null);
+            } catch (RuntimeException e) {
+                failure.set(e);
+                interrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        waiter.start();
+        waitFor(() -> queuedSlices(scheduler) == 1);
+        waiter.interrupt();
+        waiter.join(5_000);
+
+        assertInstanceOf(SchedulerInterruptedException.class, failure.get());
+        assertEquals(Boolean.TRUE, interrupted.get());
+        assertEquals(0, queuedSlices(scheduler));
+
+        release.countDown();
+        holder.join(5_000);
+        assertTrue(scheduler.stats().projects().isEmpty());
+    }
+
+    private static FairScheduler newScheduler(String weights) {
+        FairScheduler scheduler = new FairScheduler(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        ReflectionTestUtils.setField(scheduler, "slots", 1);
+        ReflectionTestUtils.setField(scheduler, "slotsDuringSearch", 1);
+        ReflectionTestUtils.setField(scheduler, "sliceSize", 64);
+        ReflectionTestUtils.setField(scheduler, "defaultWeight", 1.0);
+        ReflectionTestUtils.setField(scheduler, "weightsConfig", weights);
+        ReflectionTestUtils.setField(scheduler, "projectTag", true);
+        scheduler.init();
+        return scheduler;
+    }
+
+    private static int queuedSlices(FairScheduler scheduler) {
+        return scheduler.stats().projects().stream().mapToInt(ProjectQueueStats::queued).sum();
+    }
+
+    private static Thread start(Runnable work) {
+        Thread thread = new Thread(work);
+        thread.start();
+        return thread;
+    }
+
+    private static Void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("condizione non raggiunta entro 5s");
+            Thread.sleep(5);
+        }
+    }
+}
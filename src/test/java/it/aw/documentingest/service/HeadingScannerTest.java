@@ -0,0 +1,147 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.service.SectionDetector.SectionBoundary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Confronto di {@link SectionDetector#detect(String)} (un'unica passata di {@link HeadingScanner})
+ * con il rilevamento precedente, riportato in {@link RegexSectionDetector}: split delle righe e
+ * sei regex per riga.
+ */
+class HeadingScannerTest {
+
+    /** Frammenti da cui si compongono le righe casuali: heading validi, quasi-heading e testo. */
+    private static final String[] FRAGMENTS = {
+            "Capitolo", "CAPITOLO", "capitolo", "CaPiToLo", "Art.", "ART.", "art.", "Art", "Articolo", "articolo",
+            "Sezione", "SEZIONE", "Comma", "comma", "c.", "C.", "c", "1", "12", "3.", "1.2", "1.2.3", "1.2.3.4",
+            "10.", "2.1.", "Titolo", "titolo", "Àmbito", "Èlenco", "Éffetti", "Ìndice", "Òbblighi", "Ùltimo",
+            "àmbito", "ﬁne", "İ", "Ｃapitolo", "١", "le parti", "del contratto", ":", "-", "(", ")",
+            " ", "  ", "\t", "\u000B", "\f", "\r", " ", " ", "\u0085", " ", " "
+    };
+
+    @Test
+    void sameBoundariesAsRegexDetectorOnRandomText() {
+        int[] headings = {0};
+        SeededCases.run(300, random -> {
+            StringBuilder sb = new StringBuilder();
+            int lines = random.nextInt(400);
+            for (int i = 0; i < lines; i++) {
+                if (i > 0) sb.append('\n');
+                int fragments = random.nextInt(7);
+                for (int k = 0; k < fragments; k++) {
+                    if (k > 0 && random.nextBoolean()) sb.append(' ');
+                    sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                }
+            }
+            String text = sb.toString();
+            List<SectionBoundary> expected = RegexSectionDetector.detect(text);
+            assertEquals(expected, SectionDetector.detect(text));
+            headings[0] += expected.size();
+        });
+        assertTrue(headings[0] > 1_000, "troppo pochi heading nel testo generato: " + headings[0]);
+    }
+
+    @Test
+    void sameBoundariesAsRegexDetectorOnLegalText() {
+        String text = """
+                REGOLAMENTO PER L'ACCESSO AGLI ATTI
+
+                Capitolo 1 Disposizioni generali
+                  Art. 1 Oggetto
+                Il presente regolamento disciplina l'accesso ai documenti amministrativi.
+                \tComma 1 Ambito di applicazione
+                c. 2 Sono esclusi gli atti di cui all'art. 24 della legge 241/1990.
+                Art. 2 - Definizioni
+                Articolo 3 Responsabile del procedimento
+                Sezione 1 Modalità di accesso
+                1. Premessa
+                1.1 Ambito
+                1.1.1 Uffici competenti
+                1.2 minuscolo non è un heading
+                2.Titolo senza spazio
+                CAPITOLO 2 PROCEDIMENTO
+                capitolo II numerazione romana
+                Art.4 senza spazio
+                Comma uno
+                """;
+        List<SectionBoundary> expected = RegexSectionDetector.detect(text);
+        assertEquals(expected, SectionDetector.detect(text));
+        assertEquals(11, expected.size());
+    }
+
+    @Test
+    void emptyTextAndTextWithoutHeadings() {
+        assertTrue(SectionDetector.detect("").isEmpty());
+        assertTrue(SectionDetector.detect("\n\n   \n").isEmpty());
+        String plain = "Il contratto è stipulato tra le parti.\nLe obbligazioni decorrono dalla firma.\n";
+        assertEquals(RegexSectionDetector.detect(plain), SectionDetector.detect(plain));
+        assertTrue(SectionDetector.detect(plain).isEmpty());
+    }
+
+    /** CRLF: il '\r' finale resta nella riga, come nello split su '\n' del rilevamento precedente. */
+    @Test
+    void crlfLines() {
+        String text = "Capitolo 1 Introduzione\r\nArt. 1 Oggetto\r\ntesto\r\n1.2 Ambito\r\n";
+        assertEquals(RegexSectionDetector.detect(text), SectionDetector.detect(text));
+        String lastLine = "testo\r\nArt. 2 Definizioni";
+        assertEquals(RegexSectionDetector.detect(lastLine), SectionDetector.detect(lastLine));
+        assertEquals(1, SectionDetector.detect(lastLine).size());
+    }
+
+    @Test
+    void offsetsPointAtLineStart() {
+        String text = "premessa\n   Art. 7 Recesso\ntesto";
+        List<SectionBoundary> boundaries = SectionDetector.detect(text);
+        assertEquals(List.of(new SectionBoundary(9, 2, "Art. 7 Recesso")), boundaries);
+    }
+
+    /** Rilevamento precedente a HeadingScanner, mantenuto come riferimento. */
+    private static final class RegexSectionDetector {
+
+        private static final Pattern L1_KEYWORD = Pattern.compile(
+                "^\\s*(Capitolo|CAPITOLO)\\s+\\d+.*",
+                Pattern.CASE_INSENSITIVE);
+        private static final Pattern L1_NUMBERED = Pattern.compile(
+                "^\\s*(\\d+)\\.\\s+[A-ZÀÈÉÌÒÙ].*");
+        private static final Pattern L2_KEYWORD = Pattern.compile(
+                "^\\s*(Art\\.|Articolo|Sezione)\\s+\\d+.*",
+                Pattern.CASE_INSENSITIVE);
+        private static final Pattern L2_NUMBERED = Pattern.compile(
+                "^\\s*(\\d+\\.\\d+)\\s+[A-ZÀÈÉÌÒÙ].*");
+        private static final Pattern L3_KEYWORD = Pattern.compile(
+                "^\\s*(Comma|c\\.)\\s+\\d+.*",
+                Pattern.CASE_INSENSITIVE);
+        private static final Pattern L3_NUMBERED = Pattern.compile(
+                "^\\s*(\\d+\\.\\d+\\.\\d+)\\s+[A-ZÀÈÉÌÒÙ].*");
+
+        static List<SectionBoundary> detect(String text) {
+            List<SectionBoundary> boundaries = new ArrayList<>();
+            int offset = 0;
+            for (String line : text.split("\n", -1)) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty()) {
+                    int level = matchLevel(line);
+                    if (level > 0) {
+                        boundaries.add(new SectionBoundary(offset, level, trimmed));
+                    }
+                }
+                offset += line.length() + 1;
+            }
+            return boundaries;
+        }
+
+        private static int matchLevel(String line) {
+            if (L3_NUMBERED.matcher(line).matches() || L3_KEYWORD.matcher(line).matches()) return 3;
+            if (L2_NUMBERED.matcher(line).matches() || L2_KEYWORD.matcher(line).matches()) return 2;
+            if (L1_NUMBERED.matcher(line).matches() || L1_KEYWORD.matcher(line).matches()) return 1;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.AdmissionStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/** Budget di memoria, posti e coda FIFO di {@link IngestionAdmission}. */
+class IngestionAdmissionTest {
+
+    @Test
+    void admitsWithinBudgetAndConcurrency() throws Exception {
+        IngestionAdmission admission = newAdmission(100, 2, 4, Duration.ofSeconds(5));
+        try (IngestionAdmission.Permit a = admission.tryAdmit(40);
+             IngestionAdmission.Permit b = admission.tryAdmit(40)) {
+            AdmissionStats stats = admission.stats();
+            assertEquals(80L, stats.reservedBytes());
+            assertEquals(2, stats.inFlight());
+            assertEquals(2L, stats.admitted());
+        }
+        assertEquals(0L, admission.stats().reservedBytes());
+        assertEquals(0, admission.stats().inFlight());
+    }
+
+    /** Un file che supera da solo il budget entra quando non c'è altro in corso, al costo del budget. */
+    @Test
+    void oversizedFileIsAdmittedAlone() throws Exception {
+        IngestionAdmission admission = newAdmission(100, 2, 4, Duration.ofSeconds(5));
+        try (IngestionAdmission.Permit p = admission.tryAdmit(500)) {
+            assertEquals(100L, admission.stats().reservedBytes());
+        }
+    }
+
+    @Test
+    void fullQueueIsRejected() throws Exception {
+        IngestionAdmission admission = newAdmission(100, 2, 0, Duration.ofSeconds(5));
+        try (IngestionAdmission.Permit p = admission.tryAdmit(100)) {
+            AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class, () -> admission.tryAdmit(10));
+            assertTrue(e.retryAfterSeconds() >= 1);
+            assertThrows(AdmissionRejectedException.class, admission::checkQueue);
+            assertEquals(2L, admission.stats().rejected());
+        }
+    }
+
+    @Test
+    void waitBeyondMaxWaitIsRejected() throws Exception {
+        IngestionAdmission admission = newAdmission(100, 2, 4, Duration.ofMillis(50));
+        try (IngestionAdmission.Permit p = admission.tryAdmit(100)) {
+            assertThrows(AdmissionRejectedException.class, () -> admission.tryAdmit(10));
+            assertEquals(0, admission.stats().queued());
+        }
+    }
+
+    /** Chi arriva dopo non supera il primo della coda, anche se rientrerebbe nel budget. */
+    @Test
+    void laterWaiterDoesNotOvertakeQueueHead() throws Exception {
+        IngestionAdmission admission = newAdmission(100, 4, 4, Duration.ofSeconds(5));
+        List<String> order = new CopyOnWriteArrayList<>();
+        IngestionAdmission.Permit held = admission.tryAdmit(90);
+
+        Thread large = waiter(admission, 50, "large", order);
+        await(() -> admission.stats().queued() == 1);
+        // 90 + 5 rientra nel budget, ma "small" resta dietro a "large"
+        Thread small = waiter(admission, 5, "small", order);
+        await(() -> admission.stats().queued() == 2);
+        assertEquals(1, admission.stats().inFlight());
+        assertTrue(order.isEmpty());
+
+        held.close();
+        large.join(5_000);
+        small.join(5_000);
+        assertEquals(Set.of("large", "small"), Set.copyOf(order));
+        assertEquals(0, admission.stats().inFlight());
+    }
+
+    @Test
+    void concurrencyLimitQueuesEvenWithinBudget() throws Exception {
+        IngestionAdmission admission = newAdmission(100, 1, 4, Duration.ofMillis(50));
+        try (IngestionAdmission.Permit p = admission.tryAdmit(1)) {
+            assertThrows(AdmissionRejectedException.class, () -> admission.tryAdmit(1));
+        }
+        admission.tryAdmit(1).close();
+    }
+
+    @Test
+    void closingTwiceReleasesOnce() throws Exception {
+        IngestionAdmission admission = newAdmission(100, 2, 4, Duration.ofSeconds(5));
+        IngestionAdmission.Permit a = admission.tryAdmit(30);
+        IngestionAdmission.Permit b = admission.tryAdmit(30);
+        a.close();
+        a.close();
+        assertEquals(30L, admission.stats().reservedBytes());
+        assertEquals(1, admission.stats().inFlight());
+        b.close();
+    }
+
+    @Test
+    void disabledAdmissionDoesNotAccount() throws Exception {
+        IngestionAdmission admission = newAdmission(100, 1, 0, Duration.ofMillis(50));
+        ReflectionTestUtils.setField(admission, "enabled", false);
+        try (IngestionAdmission.Permit a = admission.tryAdmit(500);
+             IngestionAdmission.Permit b = admission.tryAdmit(500)) {
+            assertEquals(0, admission.stats().inFlight());
+            admission.checkQueue();
+        }
+    }
+
+    @Test
+    void costDependsOnFileType() {
+        IngestionAdmission admission = newAdmission(100, 1, 0, Duration.ofMillis(50));
+        assertEquals(12_000L, admission.estimateCost(1_000, "text"));
+        assertEquals(3_000L + DataSize.ofMegabytes(32).toBytes(), admission.estimateCost(1_000, "pdf"));
+        ReflectionTestUtils.setField(admission, "spoolEnabled", false);
+        assertEquals(4_000L, admission.estimateCost(1_000, "pdf"));
+        assertEquals(0L, admission.estimateCost(-1, "text"));
+    }
+
+    private static IngestionAdmission newAdmission(long budgetBytes, int maxConcurrent, int maxQueued, Duration maxWait) {
+        IngestionAdmission admission = new IngestionAdmission();
+        ReflectionTestUtils.setField(admission, "enabled", true);
+        ReflectionTestUtils.setField(admission, "memoryBudget", DataSize.ofBytes(budgetBytes));
+        ReflectionTestUtils.setField(admission, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(admission, "maxQueued", maxQueued);
+        ReflectionTestUtils.setField(admission, "maxWait", maxWait);
+        ReflectionTestUtils.setField(admission, "textFactor", 12.0);
+        ReflectionTestUtils.setField(admission, "pdfFactor", 3.0);
+        ReflectionTestUtils.setField(admission, "spoolEnabled", true);
+        ReflectionTestUtils.setField(admission, "pdfHeapBudget", DataSize.ofMegabytes(32));
+        admission.init();
+        return admission;
+    }
+
+    /** Ingestione in background che, ammessa, registra il proprio nome e rilascia il posto. */
+    private static Thread waiter(IngestionAdmission admission, long cost, String name, List<String> order) {
+        Thread thread = new Thread(() -> {
+            try (IngestionAdmission.Permit p = admission.admit(cost)) {
+                order.add(name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("condizione non raggiunta entro 5s");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package it.aw.documentingest.service;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import it.aw.documentingest.service.OffsetDocumentSplitter.Span;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Confronto di {@link OffsetDocumentSplitter} con lo splitter e la localizzazione dei chunk
+ * precedenti ({@code DocumentSplitters.recursive} + ricerca con {@code indexOf}).
+ */
+class OffsetDocumentSplitterTest {
+
+    private static final String[] WORDS = {
+            "il", "contratto", "le", "parti", "del", "presente", "accordo", "obbligazioni", "ai", "sensi",
+            "della", "normativa", "vigente", "in", "materia", "di", "responsabilità", "fornitore", "committente",
+            "termine", "entro", "giorni", "dalla", "data", "comunicazione", "scritta", "eventuale", "penale"
+    };
+
+    /**
+     * Con paragrafi che stanno in un chunk, separati da una riga vuota, e senza overlap i due
+     * splitter accorpano gli stessi paragrafi: i testi dei chunk devono coincidere.
+     */
+    @Test
+    void sameChunksAsRecursiveSplitterOnParagraphText() {
+        SeededCases.run(50, random -> {
+            int chunkSize = 200 + random.nextInt(600);
+            String text = legalText(random, 5 + random.nextInt(60), chunkSize);
+
+            List<String> expected = new ArrayList<>();
+            for (TextSegment s : DocumentSplitters.recursive(chunkSize, 0).split(Document.from(text))) {
+                expected.add(s.text());
+            }
+            List<String> actual = new ArrayList<>();
+            for (Span span : new OffsetDocumentSplitter(chunkSize, 0).split(text, new Metadata())) {
+                actual.add(span.segment().text());
+            }
+            assertEquals(expected, actual);
+        });
+    }
+
+    /**
+     * Su testo senza ripetizioni la vecchia ricerca con indexOf trovava la posizione giusta:
+     * deve coincidere con lo span esatto.
+     */
+    @Test
+    void spansMatchIndexOfLocationOnUniqueText() {
+        SeededCases.run(50, random -> {
+            int chunkSize = 200 + random.nextInt(600);
+            String text = legalText(random, 5 + random.nextInt(60), chunkSize);
+
+            int searchFrom = 0;
+            for (Span span : new OffsetDocumentSplitter(chunkSize, 0).split(text, new Metadata())) {
+                String chunkText = span.segment().text();
+                int chunkOffset = text.indexOf(chunkText, searchFrom);
+                if (chunkOffset < 0) chunkOffset = text.indexOf(chunkText);
+                if (chunkOffset >= 0) searchFrom = chunkOffset + 1;
+                assertEquals(chunkOffset, span.start());
+            }
+        });
+    }
+
+    /** Testo ripetuto e overlap, dove indexOf sbagliava: ogni span resta esatto e ordinato. */
+    @Test
+    void spansAreExactWithRepeatedTextAndOverlap() {
+        SplittableRandom random = new SplittableRandom(7);
+        String paragraph = legalText(random, 3, 300);
+        String text = String.join("\n\n", paragraph, paragraph, paragraph, paragraph, paragraph);
+        for (int overlap : new int[]{0, 50, 120}) {
+            List<Span> spans = new OffsetDocumentSplitter(300, overlap).split(text, new Metadata());
+            assertSpansValid(text, spans, 300);
+            for (int i = 1; i < spans.size(); i++) {
+                assertTrue(spans.get(i).start() > spans.get(i - 1).start());
+            }
+        }
+    }
+
+    @Test
+    void spansAreValidOnRandomText() {
+        SeededCases.run(100, random -> {
+            int chunkSize = 50 + random.nextInt(500);
+            int overlap = random.nextInt(chunkSize / 2);
+            String text = randomText(random, 2_000 + random.nextInt(20_000));
+            List<Span> spans = new OffsetDocumentSplitter(chunkSize, overlap).split(text, new Metadata());
+            assertSpansValid(text, spans, chunkSize);
+            assertCoversText(text, spans);
+        });
+    }
+
+    @Test
+    void emptyAndBlankTextHaveNoChunks() {
+        OffsetDocumentSplitter splitter = new OffsetDocumentSplitter(100, 10);
+        assertTrue(splitter.split("", new Metadata()).isEmpty());
+        assertTrue(splitter.split(" \n\r\n\t \n", new Metadata()).isEmpty());
+    }
+
+    /** Con CRLF i paragrafi restano interi e nessun chunk inizia o finisce con '\r'. */
+    @Test
+    void crlfParagraphsAreKeptWhole() {
+        String crlf = legalText(new SplittableRandom(11), 30, 250).replace("\n", "\r\n");
+        List<Span> spans = new OffsetDocumentSplitter(250, 0).split(crlf, new Metadata());
+        assertSpansValid(crlf, spans, 250);
+        List<String> paragraphs = new ArrayList<>();
+        for (Span span : spans) paragraphs.addAll(List.of(span.segment().text().split("\r\n\r\n")));
+        assertEquals(List.of(crlf.split("\r\n\r\n")), paragraphs);
+    }
+
+    @Test
+    void chunksCarryIndexMetadata() {
+        Metadata base = new Metadata();
+        base.put("documentId", "doc-1");
+        List<Span> spans = new OffsetDocumentSplitter(100, 0)
+                .split(legalText(new SplittableRandom(3), 20, 100), base);
+        for (int i = 0; i < spans.size(); i++) {
+            Metadata m = spans.get(i).segment().metadata();
+            assertEquals(String.valueOf(i), m.getString("index"));
+            assertEquals("doc-1", m.getString("documentId"));
+        }
+        assertFalse(base.containsKey("index"));
+    }
+
+    /** Testo esatto dello span, entro la dimensione massima, senza spazi ai bordi. */
+    private static void assertSpansValid(String text, List<Span> spans, int chunkSize) {
+        for (Span span : spans) {
+            assertEquals(text.substring(span.start(), span.end()), span.segment().text());
+            assertTrue(span.end() - span.start() <= chunkSize, "chunk più lungo di " + chunkSize);
+            assertFalse(Character.isWhitespace(text.charAt(span.start())));
+            assertFalse(Character.isWhitespace(text.charAt(span.end() - 1)));
+        }
+    }
+
+    /** Ogni carattere non di spaziatura appartiene ad almeno un chunk. */
+    private static void assertCoversText(String text, List<Span> spans) {
+        int covered = 0;
+        for (Span span : spans) {
+            for (int p = covered; p < span.start(); p++) {
+                assertTrue(Character.isWhitespace(text.charAt(p)), "carattere escluso in posizione " + p);
+            }
+            covered = Math.max(covered, span.end());
+        }
+        for (int p = covered; p < text.length(); p++) {
+            assertTrue(Character.isWhitespace(text.charAt(p)), "carattere escluso in posizione " + p);
+        }
+    }
+
+    /**
+     * Articoli numerati (quindi tutti diversi) su una sola riga, ciascuno più corto di maxLength,
+     * separati da una riga vuota.
+     */
+    private static String legalText(SplittableRandom random, int paragraphs, int maxLength) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= paragraphs; i++) {
+            if (i > 1) sb.append("\n\n");
+            StringBuilder p = new StringBuilder("Art. " + i + " Le parti");
+            int target = 20 + random.nextInt(Math.max(maxLength - 30, 1));
+            while (true) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                if (p.length() + word.length() + 2 > target) break;
+                p.append(' ').append(word);
+            }
+            sb.append(p).append('.');
+        }
+        return sb.toString();
+    }
+
+    /** Parole, frasi, righe e paragrafi di lunghezza casuale, con parole più lunghe di un chunk. */
+    private static String randomText(SplittableRandom random, int length) {
+        StringBuilder sb = new StringBuilder(length + 64);
+        while (sb.length() < length) {
+            int r = random.nextInt(100);
+            if (r < 3) sb.append("\n\n");
+            else if (r < 8) sb.append('\n');
+            else if (r < 18) sb.append(". ");
+            else if (r < 19) sb.append("  \t");
+            else if (r < 20) sb.append("x".repeat(random.nextInt(1_000)));
+            else sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.model.SearchResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** Invalidazione per progetto di {@link SearchResultCache}. */
+class SearchResultCacheTest {
+
+    @Test
+    void repeatedSearchIsServedFromCache() {
+        SearchResultCache cache = newCache(100);
+        AtomicInteger searches = new AtomicInteger();
+        cache.getOrCompute("penali", "prj-a", 3, () -> results("a", searches));
+        cache.getOrCompute("penali", "prj-a", 3, () -> results("a", searches));
+        assertEquals(1, searches.get());
+        assertEquals(1L, cache.stats().hits());
+        assertNotNull(cache.find("penali", "prj-a", 3));
+        assertNull(cache.find("penali", "prj-a", 5));
+    }
+
+    @Test
+    void invalidationRemovesProjectAndGlobalSearchesOnly() {
+        SearchResultCache cache = newCache(100);
+        AtomicInteger searches = new AtomicInteger();
+        cache.getOrCompute("penali", "prj-a", 3, () -> results("a", searches));
+        cache.getOrCompute("penali", "prj-b", 3, () -> results("b", searches));
+        cache.getOrCompute("penali", null, 3, () -> results("all", searches));
+
+        cache.invalidateProject("prj-a");
+
+        assertNull(cache.find("penali", "prj-a", 3));
+        assertNull(cache.find("penali", null, 3));
+        assertNotNull(cache.find("penali", "prj-b", 3));
+        assertEquals(1, cache.stats().size());
+    }
+
+    /** Una modifica committata durante la ricerca rende il risultato già vecchio: non va memorizzato. */
+    @Test
+    void resultComputedAcrossInvalidationIsNotStored() {
+        SearchResultCache cache = newCache(100);
+        AtomicInteger searches = new AtomicInteger();
+        cache.getOrCompute("recesso", "prj-a", 3, () -> {
+            cache.invalidateProject("prj-a");
+            return results("a", searches);
+        });
+        assertNull(cache.find("recesso", "prj-a", 3));
+
+        cache.getOrCompute("recesso", null, 3, () -> {
+            cache.invalidateProject("prj-b");
+            return results("all", searches);
+        });
+        assertNull(cache.find("recesso", null, 3));
+    }
+
+    @Test
+    void invalidatingAnotherProjectKeepsProjectSearches() {
+        SearchResultCache cache = newCache(100);
+        AtomicInteger searches = new AtomicInteger();
+        cache.getOrCompute("recesso", "prj-a", 3, () -> {
+            cache.invalidateProject("prj-b");
+            return results("a", searches);
+        });
+        assertNotNull(cache.find("recesso", "prj-a", 3));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        SearchResultCache cache = newCache(2);
+        AtomicInteger searches = new AtomicInteger();
+        cache.getOrCompute("uno", "prj-a", 3, () -> results("a", searches));
+        cache.getOrCompute("due", "prj-a", 3, () -> results("a", searches));
+        cache.find("uno", "prj-a", 3);
+        cache.getOrCompute("tre", "prj-a", 3, () -> results("a", searches));
+
+        assertNotNull(cache.find("uno", "prj-a", 3));
+        assertNull(cache.find("due", "prj-a", 3));
+        assertEquals(1L, cache.stats().evictions());
+    }
+
+    private static SearchResultCache newCache(int maxEntries) {
+        SearchResultCache cache = new SearchResultCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(cache, "maxSize", DataSize.ofMegabytes(1));
+        return cache;
+    }
+
+    private static List<SearchResult> results(String documentId, AtomicInteger searches) {
+        searches.incrementAndGet();
+        return List.of(new SearchResult(0.9, "testo", documentId + ".txt", documentId, null, null, 0, null, null));
+    }
+}
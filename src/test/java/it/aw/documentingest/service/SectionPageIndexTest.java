@@ -0,0 +1,146 @@
+package it.aw.documentingest.service;
+
+import it.aw.documentingest.service.PdfPageParser.PagedText;
+import it.aw.documentingest.service.SectionDetector.SectionBoundary;
+import it.aw.documentingest.service.SectionPageIndex.SectionContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Confronto di {@link SectionPageIndex} con le scansioni lineari che sostituisce:
+ * {@link SectionDetector#hierarchyAt(int, List)} e {@link PagedText#pageRangeFor(int, int)}.
+ */
+class SectionPageIndexTest {
+
+    @Test
+    void sectionContextMatchesHierarchyAtOnRandomBoundaries() {
+        SeededCases.run(100, random -> {
+            int length = 1_000 + random.nextInt(50_000);
+            List<SectionBoundary> boundaries = randomBoundaries(random, length, random.nextInt(200));
+            SectionPageIndex index = SectionPageIndex.build(boundaries, null);
+            for (int k = 0; k < 500; k++) {
+                int offset = random.nextInt(length + 10) - 5;
+                assertContext(SectionDetector.hierarchyAt(offset, boundaries), index.sectionAt(offset));
+            }
+            for (SectionBoundary b : boundaries) {
+                for (int offset = b.offset() - 1; offset <= b.offset() + 1; offset++) {
+                    assertContext(SectionDetector.hierarchyAt(offset, boundaries), index.sectionAt(offset));
+                }
+            }
+        });
+    }
+
+    @Test
+    void sectionContextMatchesHierarchyAtOnLegalText() {
+        String text = """
+                Capitolo 1 Disposizioni generali
+                Art. 1 Oggetto
+                Il presente regolamento disciplina l'accesso.
+                Comma 1 Ambito
+                Si applica a tutti gli uffici.
+                Art. 2 Definizioni
+                c. 1 Ai fini del presente regolamento si intende:
+                c. 2 per ufficio, la struttura competente.
+                Capitolo 2 Procedimento
+                Sezione 1 Avvio
+                1.2.3 Termini
+                Il termine è di trenta giorni.
+                """;
+        List<SectionBoundary> boundaries = SectionDetector.detect(text);
+        SectionPageIndex index = SectionPageIndex.build(boundaries, null);
+        for (int offset = 0; offset <= text.length(); offset++) {
+            assertContext(SectionDetector.hierarchyAt(offset, boundaries), index.sectionAt(offset));
+        }
+    }
+
+    @Test
+    void noBoundariesGiveEmptyContext() {
+        SectionPageIndex index = SectionPageIndex.build(List.of(), null);
+        assertEquals(0, index.boundaryCount());
+        SectionContext context = index.sectionAt(42);
+        assertEquals("", context.path());
+        assertEquals("", context.title());
+        assertEquals(0, context.level());
+    }
+
+    @Test
+    void pageRangeMatchesPagedTextOnRandomPages() {
+        SeededCases.run(100, random -> {
+            PagedText paged = randomPages(random, 1 + random.nextInt(300));
+            int length = paged.fullText().length();
+            SectionPageIndex index = SectionPageIndex.build(List.of(), paged);
+            for (int k = 0; k < 1_000; k++) {
+                int start = random.nextInt(length + 1);
+                int end = Math.min(length + 5, start + 1 + random.nextInt(2_000));
+                assertArrayEquals(paged.pageRangeFor(start, end), index.pageRangeFor(start, end),
+                        "[" + start + ", " + end + ")");
+            }
+        });
+    }
+
+    /** Chunk che attraversano più pagine, che iniziano o finiscono esattamente su un confine. */
+    @Test
+    void pageRangeOnPageEdges() {
+        PagedText paged = new PagedText("x".repeat(300), List.of(
+                new int[]{1, 0, 100}, new int[]{2, 101, 101}, new int[]{3, 102, 200}, new int[]{4, 201, 300}));
+        SectionPageIndex index = SectionPageIndex.build(List.of(), paged);
+        int[][] intervals = {{0, 100}, {0, 101}, {99, 103}, {100, 102}, {101, 102}, {150, 250}, {0, 300},
+                {200, 201}, {299, 300}, {300, 310}};
+        for (int[] interval : intervals) {
+            assertArrayEquals(paged.pageRangeFor(interval[0], interval[1]), index.pageRangeFor(interval[0], interval[1]),
+                    "[" + interval[0] + ", " + interval[1] + ")");
+        }
+        assertArrayEquals(new int[]{1, 3}, index.pageRangeFor(99, 103));
+    }
+
+    @Test
+    void textWithoutPagesHasNoPageRange() {
+        assertNull(SectionPageIndex.build(List.of(), null).pageRangeFor(0, 10));
+    }
+
+    /** Stessi titoli di hierarchyAt, con path, titolo e livello calcolati come in enrichSegments. */
+    private static void assertContext(String[] h, SectionContext context) {
+        assertEquals(h[0], context.l1());
+        assertEquals(h[1], context.l2());
+        assertEquals(h[2], context.l3());
+        List<String> parts = new ArrayList<>();
+        for (String title : h) if (title != null) parts.add(title);
+        assertEquals(String.join(" / ", parts), context.path());
+        int level = h[2] != null ? 3 : h[1] != null ? 2 : h[0] != null ? 1 : 0;
+        assertEquals(level, context.level());
+        assertEquals(level == 0 ? "" : h[level - 1], context.title());
+    }
+
+    /** Heading con offset non decrescenti (anche ripetuti), livelli 1-3. */
+    private static List<SectionBoundary> randomBoundaries(SplittableRandom random, int length, int count) {
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) offsets[i] = random.nextInt(length);
+        Arrays.sort(offsets);
+        List<SectionBoundary> boundaries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int level = 1 + random.nextInt(3);
+            boundaries.add(new SectionBoundary(offsets[i], level, "L" + level + "-" + i));
+        }
+        return boundaries;
+    }
+
+    /** Pagine consecutive separate da un carattere, con qualche pagina vuota. */
+    private static PagedText randomPages(SplittableRandom random, int pages) {
+        List<int[]> offsets = new ArrayList<>(pages);
+        int position = 0;
+        for (int page = 1; page <= pages; page++) {
+            int size = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(3_000);
+            offsets.add(new int[]{page, position, position + size});
+            position += size + 1;
+        }
+        return new PagedText("x".repeat(position), offsets);
+    }
+}
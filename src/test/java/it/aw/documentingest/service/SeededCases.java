@@ -0,0 +1,27 @@
+package it.aw.documentingest.service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Casi di test casuali ma riproducibili: ogni caso riceve un {@link SplittableRandom} con il
+ * proprio seed (da 1 a {@code count}) e un'asserzione fallita riporta il seed da rieseguire.
+ */
+final class SeededCases {
+
+    @FunctionalInterface
+    interface SeededCase {
+        void run(SplittableRandom random);
+    }
+
+    private SeededCases() {}
+
+    static void run(int count, SeededCase testCase) {
+        for (long seed = 1; seed <= count; seed++) {
+            try {
+                testCase.run(new SplittableRandom(seed));
+            } catch (AssertionError e) {
+                throw new AssertionError("seed " + seed + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}